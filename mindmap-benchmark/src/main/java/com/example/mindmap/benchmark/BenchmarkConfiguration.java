@@ -0,0 +1,30 @@
+package com.example.mindmap.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Extra beans for the benchmark context: routes the application's DataSource through a
+ * {@link SqlStatementCounter}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BenchmarkConfiguration {
+
+    @Bean
+    public static SqlStatementCounter sqlStatementCounter() {
+        return new SqlStatementCounter();
+    }
+
+    @Bean
+    public static BeanPostProcessor countingDataSourcePostProcessor(SqlStatementCounter counter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource ? counter.wrap(dataSource) : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.mindmap.benchmark;
+
+import com.example.mindmap.MindmapApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP load test of the running application, once per request execution mode, so platform and
+ * virtual threads can be compared on the same workload.
+ * <p>
+ * Each mode starts the full web application on a random port against a fresh embedded H2 database
+ * holding one synthetic tree, with every SQL statement delayed by {@code roundTrip} to stand in for
+ * the MySQL network round trip. {@code users} closed-loop clients then each send one request after
+ * the other: node reads, paged children reads and leaf status changes. Only responses completed
+ * after the warm-up are counted.
+ * <p>
+ * The platform baseline runs without the request limit, bounded by Tomcat's worker threads alone as
+ * before the limit existed; the virtual mode runs once per request limit in {@code maxRequests}.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar com.example.mindmap.benchmark.LoadTest [--name=value ...]};
+ * the virtual mode needs Java 21 and is skipped on older runtimes.
+ */
+public final class LoadTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("modes", "platform,virtual");
+        DEFAULTS.put("users", "400");
+        DEFAULTS.put("warmup", "10s");
+        DEFAULTS.put("duration", "30s");
+        // Delay per SQL statement
+        DEFAULTS.put("roundTrip", "2ms");
+        // Percentage of requests that set a leaf's status; the rest are reads
+        DEFAULTS.put("writePercent", "20");
+        DEFAULTS.put("depth", "3");
+        DEFAULTS.put("fanOut", "8");
+        // Application settings under test
+        DEFAULTS.put("tomcatThreads", "200");
+        DEFAULTS.put("poolSize", "20");
+        // Request limits: platform mode runs once, without a limit by default like plain Tomcat;
+        // virtual mode runs once per listed limit
+        DEFAULTS.put("platformMaxRequests", "0");
+        DEFAULTS.put("maxRequests", "8,16,32,64");
+        DEFAULTS.put("queueTimeout", "2s");
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            String[] pair = arg.replaceFirst("^--", "").split("=", 2);
+            if (pair.length != 2 || !DEFAULTS.containsKey(pair[0])) {
+                throw new IllegalArgumentException("Unknown option " + arg + ", expected --name=value with name one of " + DEFAULTS.keySet());
+            }
+            options.put(pair[0], pair[1]);
+        }
+        System.out.println("Options: " + options);
+
+        List<String> rows = new ArrayList<>();
+        for (String mode : options.get("modes").split(",")) {
+            boolean virtual = "virtual".equals(mode.trim());
+            if (virtual && Runtime.version().feature() < 21) {
+                rows.add(String.format("%-9s skipped: virtual threads need Java 21, running on %d", mode, Runtime.version().feature()));
+                continue;
+            }
+            String limits = virtual ? options.get("maxRequests") : options.get("platformMaxRequests");
+            for (String limit : limits.split(",")) {
+                rows.add(run(mode.trim(), virtual, Integer.parseInt(limit.trim()), options).format());
+            }
+        }
+        System.out.println();
+        System.out.printf("%-9s %6s %8s %10s %8s %8s %8s %8s %8s%n",
+                "mode", "limit", "users", "req/s", "p50 ms", "p99 ms", "max ms", "503", "errors");
+        rows.forEach(System.out::println);
+    }
+
+    private static Result run(String mode, boolean virtual, int maxRequests, Map<String, String> options)
+            throws InterruptedException {
+        String url = "jdbc:h2:mem:mindmap-load-" + mode + "-" + maxRequests + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MindmapApplication.class, BenchmarkConfiguration.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=" + url,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--mindmap.cache.tree.enabled=false",
+                        "--spring.threads.virtual.enabled=" + virtual,
+                        "--server.tomcat.threads.max=" + options.get("tomcatThreads"),
+                        "--spring.datasource.hikari.maximum-pool-size=" + options.get("poolSize"),
+                        "--mindmap.concurrency.max-requests=" + maxRequests,
+                        "--mindmap.concurrency.queue-timeout=" + options.get("queueTimeout"));
+        try {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<List<Long>> levels = new SyntheticTreeGenerator(context.getBean(DataSource.class),
+                    Integer.parseInt(options.get("fanOut")), 64, 512)
+                    .generate(MindMapContext.REQUIREMENT_ID, Integer.parseInt(options.get("depth")));
+            context.getBean(SqlStatementCounter.class).setRoundTrip(duration(options.get("roundTrip")));
+            Result result = new Result(mode, maxRequests, Integer.parseInt(options.get("users")));
+            return drive(result, "http://localhost:" + port + "/api/mindmap", levels, options);
+        } finally {
+            context.close();
+        }
+    }
+
+    private static Result drive(Result result, String baseUrl, List<List<Long>> levels, Map<String, String> options)
+            throws InterruptedException {
+        int users = result.users;
+        int writePercent = Integer.parseInt(options.get("writePercent"));
+        long measureFrom = System.nanoTime() + duration(options.get("warmup")).toNanos();
+        long end = measureFrom + duration(options.get("duration")).toNanos();
+        List<Long> nodes = levels.stream().flatMap(List::stream).toList();
+        List<Long> inner = levels.subList(0, levels.size() - 1).stream().flatMap(List::stream).toList();
+        List<Long> leaves = levels.get(levels.size() - 1);
+
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            Thread user = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                LatencySamples samples = new LatencySamples();
+                while (System.nanoTime() < end) {
+                    HttpRequest request;
+                    int dice = random.nextInt(100);
+                    if (dice < writePercent) {
+                        String status = random.nextBoolean() ? "\"TESTED\"" : "\"PENDING_TEST\"";
+                        request = HttpRequest.newBuilder(URI.create(baseUrl + "/nodes/" + pick(leaves, random) + "/status"))
+                                .header("Content-Type", "application/json")
+                                .PUT(HttpRequest.BodyPublishers.ofString(status)).build();
+                    } else if (dice < writePercent + (100 - writePercent) / 4) {
+                        request = HttpRequest.newBuilder(URI.create(baseUrl + "/nodes/" + pick(inner, random) + "/children?limit=50")).build();
+                    } else {
+                        request = HttpRequest.newBuilder(URI.create(baseUrl + "/nodes/" + pick(nodes, random))).build();
+                    }
+                    long start = System.nanoTime();
+                    int status;
+                    try {
+                        status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (Exception e) {
+                        status = -1;
+                    }
+                    long finished = System.nanoTime();
+                    if (start >= measureFrom && finished <= end) {
+                        if (status == 503) {
+                            result.rejected.incrementAndGet();
+                        } else if (status < 200 || status >= 300) {
+                            result.errors.incrementAndGet();
+                        } else {
+                            samples.add(finished - start);
+                        }
+                    }
+                }
+                result.merge(samples);
+            }, "load-user-" + i);
+            threads.add(user);
+            user.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        result.seconds = duration(options.get("duration")).toNanos() / 1e9;
+        return result;
+    }
+
+    private static Long pick(List<Long> ids, ThreadLocalRandom random) {
+        return ids.get(random.nextInt(ids.size()));
+    }
+
+    // Spring-style durations: "500ms", "2s", "1m"; a plain number is milliseconds
+    private static Duration duration(String value) {
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofMillis(Long.parseLong(value));
+    }
+
+    private static class LatencySamples {
+        long[] nanos = new long[1024];
+        int size;
+
+        void add(long value) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = value;
+        }
+    }
+
+    private static class Result {
+        final String mode;
+        // mindmap.concurrency.max-requests, 0 for none
+        final int limit;
+        final int users;
+        final AtomicInteger rejected = new AtomicInteger();
+        final AtomicInteger errors = new AtomicInteger();
+        final LatencySamples all = new LatencySamples();
+        double seconds;
+
+        Result(String mode, int limit, int users) {
+            this.mode = mode;
+            this.limit = limit;
+            this.users = users;
+        }
+
+        synchronized void merge(LatencySamples samples) {
+            for (int i = 0; i < samples.size; i++) {
+                all.add(samples.nanos[i]);
+            }
+        }
+
+        String format() {
+            long[] sorted = Arrays.copyOf(all.nanos, all.size);
+            Arrays.sort(sorted);
+            return String.format("%-9s %6s %8d %10.1f %8.1f %8.1f %8.1f %8d %8d", mode, limit > 0 ? limit : "-", users, sorted.length / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    sorted.length > 0 ? sorted[sorted.length - 1] / 1e6 : 0.0, rejected.get(), errors.get());
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted.length == 0 ? 0.0 : sorted[(int) Math.ceil(p * sorted.length) - 1] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.mindmap.benchmark;
+
+import com.example.mindmap.MindmapApplication;
+import com.example.mindmap.service.MindMapService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The application context every benchmark runs against: the real service and mappers on an
+ * embedded H2 database in MySQL mode, schema applied by the normal Liquibase changelog, plus one
+ * synthetic requirement tree of the configured shape.
+ */
+@State(Scope.Benchmark)
+public class MindMapContext {
+
+    public static final String REQUIREMENT_ID = "BENCH-TREE";
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    // Levels below the root; total nodes = 1 + fanOut + fanOut^2 + ... + fanOut^depth
+    @Param("4")
+    public int depth;
+
+    @Param("8")
+    public int fanOut;
+
+    @Param("64")
+    public int descriptionSize;
+
+    @Param("512")
+    public int remarksSize;
+
+    // Requirement tree cache; off by default so reads measure assembly, not a map lookup
+    @Param("false")
+    public boolean treeCache;
+
+    public ConfigurableApplicationContext context;
+    public MindMapService service;
+    public SqlStatementCounter sqlCounter;
+    public SyntheticTreeGenerator generator;
+    // Ids of the benchmark tree, level by level
+    public List<List<Long>> levels;
+
+    @Setup(Level.Trial)
+    public void start() {
+        String url = "jdbc:h2:mem:mindmap-bench-" + DATABASES.incrementAndGet()
+                + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+        context = new SpringApplicationBuilder(MindmapApplication.class, BenchmarkConfiguration.class)
+                .web(WebApplicationType.NONE)
+                // Command-line style so they win over the application's own application.properties
+                .run("--spring.datasource.url=" + url,
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.main.banner-mode=off",
+                        "--logging.level.root=WARN",
+                        "--mindmap.cache.tree.enabled=" + treeCache);
+        service = context.getBean(MindMapService.class);
+        sqlCounter = context.getBean(SqlStatementCounter.class);
+        generator = new SyntheticTreeGenerator(context.getBean(DataSource.class), fanOut, descriptionSize, remarksSize);
+        levels = generator.generate(REQUIREMENT_ID, depth);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public Long rootId() {
+        return levels.get(0).get(0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.mindmap.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary JMH results: SQL statements issued by the measured calls. Divide
+ * {@code sqlStatements} by {@code calls} for statements per operation.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class SqlCounters {
+
+    public long sqlStatements;
+    public long calls;
+
+    private long start;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        sqlStatements = 0;
+        calls = 0;
+    }
+
+    void begin(MindMapContext mindMap) {
+        start = mindMap.sqlCounter.get();
+    }
+
+    void end(MindMapContext mindMap) {
+        sqlStatements += mindMap.sqlCounter.get() - start;
+        calls++;
+    }
+}
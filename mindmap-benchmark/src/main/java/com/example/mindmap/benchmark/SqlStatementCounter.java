@@ -0,0 +1,83 @@
+package com.example.mindmap.benchmark;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the SQL statements sent to the database through a wrapped {@link DataSource}.
+ * <p>
+ * Every {@code execute*} call on a statement counts as one; a JDBC batch counts once per
+ * {@code executeBatch}, since that is one round trip. An optional delay before each of them
+ * stands in for the network round trip an embedded database does not have.
+ */
+public class SqlStatementCounter {
+
+    private final AtomicLong statements = new AtomicLong();
+    private volatile long roundTripNanos;
+
+    public long get() {
+        return statements.get();
+    }
+
+    public void setRoundTrip(Duration roundTrip) {
+        roundTripNanos = roundTrip.toNanos();
+    }
+
+    public DataSource wrap(DataSource dataSource) {
+        return proxy(DataSource.class, dataSource);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T proxy(Class<T> type, T target) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new Handler(target));
+    }
+
+    private class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute") && target instanceof Statement) {
+                statements.incrementAndGet();
+                if (roundTripNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(roundTripNanos); // unmounts a virtual thread, like socket I/O
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            // Follow the object graph down to the statements; unwrap() and friends return the raw objects.
+            if (result instanceof Connection connection && method.getReturnType() == Connection.class) {
+                return proxy(Connection.class, connection);
+            }
+            if (result instanceof CallableStatement statement && method.getReturnType() == CallableStatement.class) {
+                return proxy(CallableStatement.class, statement);
+            }
+            if (result instanceof PreparedStatement statement && method.getReturnType() == PreparedStatement.class) {
+                return proxy(PreparedStatement.class, statement);
+            }
+            if (result instanceof Statement statement && method.getReturnType() == Statement.class) {
+                return proxy(Statement.class, statement);
+            }
+            return result;
+        }
+    }
+}
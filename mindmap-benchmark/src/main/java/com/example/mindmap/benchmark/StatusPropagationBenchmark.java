@@ -0,0 +1,71 @@
+package com.example.mindmap.benchmark;
+
+import com.example.mindmap.dto.BatchStatusUpdateResultDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code setNodeStatus} and {@code batchSetNodeStatus}. Every call flips its targets between
+ * TESTED and PENDING_TEST, so each invocation really propagates down and up the tree.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StatusPropagationBenchmark {
+
+    // Tree level of the node setNodeStatus targets; 0 is the root, i.e. the whole tree
+    @Param("1")
+    public int targetLevel;
+
+    // Number of leaves batchSetNodeStatus targets; siblings share their ancestors
+    @Param("64")
+    public int batchSize;
+
+    private Long target;
+    private List<Long> batch;
+    private boolean tested;
+
+    @Setup(Level.Trial)
+    public void pickTargets(MindMapContext mindMap) {
+        List<List<Long>> levels = mindMap.levels;
+        target = levels.get(Math.min(targetLevel, levels.size() - 1)).get(0);
+        List<Long> leaves = levels.get(levels.size() - 1);
+        batch = leaves.subList(0, Math.min(batchSize, leaves.size()));
+    }
+
+    @Benchmark
+    public MindMapNode setNodeStatus(MindMapContext mindMap, SqlCounters counters) {
+        tested = !tested;
+        counters.begin(mindMap);
+        MindMapNode node = mindMap.service.setNodeStatus(target, tested ? NodeStatus.TESTED : NodeStatus.PENDING_TEST, null);
+        counters.end(mindMap);
+        return node;
+    }
+
+    @Benchmark
+    public BatchStatusUpdateResultDto batchSetNodeStatus(MindMapContext mindMap, SqlCounters counters) {
+        tested = !tested;
+        counters.begin(mindMap);
+        BatchStatusUpdateResultDto result = mindMap.service.batchSetNodeStatus(batch, tested ? NodeStatus.TESTED : NodeStatus.PENDING_TEST, null);
+        counters.end(mindMap);
+        return result;
+    }
+}
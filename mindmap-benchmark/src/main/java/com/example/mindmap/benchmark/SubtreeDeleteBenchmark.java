@@ -0,0 +1,50 @@
+package com.example.mindmap.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code deleteNodeAndChildren} on a freshly generated subtree per call. Generating the subtree
+ * happens in an invocation-level setup and is neither timed nor counted.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SubtreeDeleteBenchmark {
+
+    private static final String REQUIREMENT_ID = "BENCH-DELETE";
+
+    // Levels below the deleted node, with the fan-out of the shared context
+    @Param("3")
+    public int deleteDepth;
+
+    private Long subtreeRoot;
+
+    @Setup(Level.Invocation)
+    public void generateSubtree(MindMapContext mindMap) {
+        subtreeRoot = mindMap.generator.generate(REQUIREMENT_ID, deleteDepth).get(0).get(0);
+    }
+
+    @Benchmark
+    public int deleteNodeAndChildren(MindMapContext mindMap, SqlCounters counters) {
+        counters.begin(mindMap);
+        int deleted = mindMap.service.deleteNodeAndChildren(subtreeRoot);
+        counters.end(mindMap);
+        return deleted;
+    }
+}
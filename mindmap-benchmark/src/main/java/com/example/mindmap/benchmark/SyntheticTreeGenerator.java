@@ -0,0 +1,136 @@
+package com.example.mindmap.benchmark;
+
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.util.NodePaths;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts complete synthetic trees (every inner node has {@code fanOut} children, all leaves at
+ * the same depth) straight through JDBC batches, with path, depth and status counters filled in
+ * the way the service maintains them. All generated nodes start as PENDING_TEST, with developers
+ * and testers taken round-robin from small teams.
+ */
+public class SyntheticTreeGenerator {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int TEAM_SIZE = 8;
+
+    private static final String INSERT_SQL = "INSERT INTO mind_map_node (id, parent_id, description, remarks, requirement_id, "
+            + "status, path, depth, child_pending_count, child_tested_count, child_cancelled_count, "
+            + "desc_pending_count, desc_tested_count, desc_cancelled_count, backend_developer, frontend_developer, tester) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, ?, 0, 0, ?, ?, ?)";
+
+    private final DataSource dataSource;
+    private final int fanOut;
+    private final String description;
+    private final String remarks;
+    private long nextId;
+
+    public SyntheticTreeGenerator(DataSource dataSource, int fanOut, int descriptionSize, int remarksSize) {
+        this.dataSource = dataSource;
+        this.fanOut = fanOut;
+        this.description = text(descriptionSize);
+        this.remarks = remarksSize > 0 ? text(remarksSize) : null;
+        this.nextId = maxId() + 1;
+    }
+
+    /** Number of nodes in a tree of the given depth, root included. */
+    public int treeSize(int depth) {
+        int size = 0;
+        int level = 1;
+        for (int d = 0; d <= depth; d++) {
+            size += level;
+            level *= fanOut;
+        }
+        return size;
+    }
+
+    /**
+     * Inserts a tree {@code depth} levels deep as a new root of {@code requirementId}.
+     *
+     * @return the generated ids, level by level; {@code levels.get(0)} holds the root
+     */
+    public List<List<Long>> generate(String requirementId, int depth) {
+        List<List<Long>> levels = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement insert = connection.prepareStatement(INSERT_SQL)) {
+            int pendingRows = 0;
+            List<Long> parents = null;
+            List<String> parentPaths = null;
+            for (int d = 0; d <= depth; d++) {
+                List<Long> ids = new ArrayList<>();
+                List<String> paths = new ArrayList<>();
+                int children = d < depth ? fanOut : 0;
+                int descendants = treeSize(depth - d) - 1;
+                int parentCount = parents == null ? 1 : parents.size();
+                for (int p = 0; p < parentCount; p++) {
+                    int siblings = parents == null ? 1 : fanOut;
+                    for (int s = 0; s < siblings; s++) {
+                        long id = nextId++;
+                        String path = NodePaths.childPath(parentPaths == null ? null : parentPaths.get(p), id);
+                        insert.setLong(1, id);
+                        if (parents == null) {
+                            insert.setNull(2, Types.BIGINT);
+                        } else {
+                            insert.setLong(2, parents.get(p));
+                        }
+                        insert.setString(3, description);
+                        insert.setString(4, remarks);
+                        insert.setString(5, requirementId);
+                        insert.setString(6, NodeStatus.PENDING_TEST.name());
+                        insert.setString(7, path);
+                        insert.setInt(8, d);
+                        insert.setInt(9, children);
+                        insert.setInt(10, descendants);
+                        insert.setString(11, "backend_dev_" + id % TEAM_SIZE);
+                        insert.setString(12, "frontend_dev_" + (id / 2) % TEAM_SIZE);
+                        insert.setString(13, "tester_" + (id / 3) % TEAM_SIZE);
+                        insert.addBatch();
+                        if (++pendingRows % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                        ids.add(id);
+                        paths.add(path);
+                    }
+                }
+                levels.add(ids);
+                parents = ids;
+                parentPaths = paths;
+            }
+            insert.executeBatch();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not generate synthetic tree for " + requirementId, e);
+        }
+        return levels;
+    }
+
+    private long maxId() {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             var rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) FROM mind_map_node")) {
+            rs.next();
+            // Leave room above the sample data so ids handed out by the identity column never collide
+            return rs.getLong(1) + 1_000_000L;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read mind_map_node ids", e);
+        }
+    }
+
+    private static String text(int size) {
+        StringBuilder sb = new StringBuilder(size);
+        String words = "lorem ipsum dolor sit amet consectetur adipiscing elit ";
+        while (sb.length() < size) {
+            sb.append(words, 0, Math.min(words.length(), size - sb.length()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mindmap.benchmark;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.tree.MindMapTree;
+import com.example.mindmap.tree.TreeAssembler;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code getMindMapByRequirementId}: loading and assembling the whole synthetic tree. On rows loaded
+ * once, the in-memory part of the tree endpoint alone: assembly, and assembly plus writing the JSON
+ * ({@code -prof gc} bytes per op / nodes = bytes per node).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeAssemblyBenchmark {
+
+    @Benchmark
+    public List<MindMapNodeDto> getMindMapByRequirementId(MindMapContext mindMap, SqlCounters counters) {
+        counters.begin(mindMap);
+        List<MindMapNodeDto> tree = mindMap.service.getMindMapByRequirementId(MindMapContext.REQUIREMENT_ID);
+        counters.end(mindMap);
+        return tree;
+    }
+
+    @Benchmark
+    public MindMapTree assembleTree(Rows rows) {
+        return rows.assembler.assemble(MindMapContext.REQUIREMENT_ID, rows.rows);
+    }
+
+    @Benchmark
+    public MindMapTree assembleAndWriteTree(Rows rows) throws IOException {
+        MindMapTree tree = rows.assembler.assemble(MindMapContext.REQUIREMENT_ID, rows.rows);
+        rows.objectMapper.writeValue(OutputStream.nullOutputStream(), tree);
+        return tree;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Rows {
+        TreeAssembler assembler;
+        ObjectMapper objectMapper;
+        List<MindMapNode> rows;
+
+        @Setup
+        public void load(MindMapContext mindMap) {
+            assembler = mindMap.context.getBean(TreeAssembler.class);
+            objectMapper = mindMap.context.getBean(ObjectMapper.class);
+            QueryWrapper<MindMapNode> query = new QueryWrapper<>();
+            query.eq("requirement_id", MindMapContext.REQUIREMENT_ID).orderByAsc("id");
+            rows = mindMap.context.getBean(MindMapNodeMapper.class).selectList(query);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.mindmap.benchmark;
+
+import com.example.mindmap.tree.MindMapTree;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Nested versus flat ({@link MindMapTree#FLAT_MEDIA_TYPE}) form of the tree endpoint on a cached
+ * tree: writing each form, optionally gzipped as a compressing proxy would, and parsing it again as
+ * a client would. The flat form carries the descriptions only, the endpoint's default. Bytes per
+ * response are reported as {@code responseBytes / calls}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeFormatBenchmark {
+
+    @Benchmark
+    public void writeNested(Payloads payloads, ResponseCounters counters) throws IOException {
+        counters.add(payloads.write(payloads.tree));
+    }
+
+    @Benchmark
+    public void writeFlat(Payloads payloads, ResponseCounters counters) throws IOException {
+        counters.add(payloads.write(payloads.tree.flat(Payloads.DEFAULT_COLUMNS)));
+    }
+
+    @Benchmark
+    public JsonNode parseNested(Payloads payloads) throws IOException {
+        return payloads.objectMapper.readTree(payloads.nested);
+    }
+
+    @Benchmark
+    public JsonNode parseFlat(Payloads payloads) throws IOException {
+        return payloads.objectMapper.readTree(payloads.flat);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Payloads {
+        static final Set<MindMapTree.TextColumn> DEFAULT_COLUMNS = EnumSet.of(MindMapTree.TextColumn.DESCRIPTION);
+
+        @Param("false")
+        public boolean gzip;
+
+        ObjectMapper objectMapper;
+        MindMapTree tree;
+        byte[] nested;
+        byte[] flat;
+
+        @Setup
+        public void load(MindMapContext mindMap) throws IOException {
+            objectMapper = mindMap.context.getBean(ObjectMapper.class);
+            tree = mindMap.service.getMindMapTree(MindMapContext.REQUIREMENT_ID);
+            nested = objectMapper.writeValueAsBytes(tree);
+            flat = objectMapper.writeValueAsBytes(tree.flat(DEFAULT_COLUMNS));
+        }
+
+        long write(Object body) throws IOException {
+            CountingOutputStream counting = new CountingOutputStream();
+            if (gzip) {
+                try (GZIPOutputStream out = new GZIPOutputStream(counting, 8192)) {
+                    objectMapper.writeValue(out, body);
+                }
+            } else {
+                objectMapper.writeValue(counting, body);
+            }
+            return counting.count;
+        }
+    }
+
+    /** Bytes written by the measured calls; {@code responseBytes / calls} is the response size. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ResponseCounters {
+        public long responseBytes;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            responseBytes = 0;
+            calls = 0;
+        }
+
+        void add(long bytes) {
+            responseBytes += bytes;
+            calls++;
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
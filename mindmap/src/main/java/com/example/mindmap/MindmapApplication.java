@@ -2,10 +2,13 @@ package com.example.mindmap;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import com.example.mindmap.config.MindMapProperties;
 import org.mybatis.spring.annotation.MapperScan;
 
 @SpringBootApplication
 @MapperScan("com.example.mindmap.mapper")
+@EnableConfigurationProperties(MindMapProperties.class)
 public class MindmapApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,89 @@
+package com.example.mindmap.cache;
+
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.routing.ReadRoutingDataSource;
+import com.example.mindmap.tree.MindMapTree;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded cache of assembled requirement trees, keyed by requirementId.
+ * <p>
+ * Entries are evicted by size and by age. Mutations invalidate the affected requirements
+ * immediately and again after their transaction commits, so a tree loaded from uncommitted
+ * state by a concurrent reader cannot outlive the write. Hit, miss and eviction counters are
+ * published to Micrometer as {@code cache.*{cache=mindmap.requirementTree}}.
+ * <p>
+ * Cached trees are immutable and shared between callers.
+ * <p>
+ * With read replicas, only trees read from the primary are cached. A tree loaded from a lagging
+ * replica could otherwise outlive the replica's catch-up and be served under a newer ETag.
+ * Replica reads use a cached tree when there is one, as it is at least as new as the replica.
+ */
+@Component
+public class RequirementTreeCache {
+
+    private static final String CACHE_NAME = "mindmap.requirementTree";
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    private ReadRoutingDataSource readRoutingDataSource;
+
+    private Cache<String, MindMapTree> cache;
+
+    @PostConstruct
+    void init() {
+        MindMapProperties.TreeCache settings = mindMapProperties.getCache().getTree();
+        cache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getExpireAfterWrite())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    public MindMapTree get(String requirementId, Function<String, MindMapTree> loader) {
+        if (!mindMapProperties.getCache().getTree().isEnabled()) {
+            return loader.apply(requirementId);
+        }
+        if (readRoutingDataSource != null && readRoutingDataSource.routesToReplica()) {
+            MindMapTree cached = cache.getIfPresent(requirementId);
+            return cached != null ? cached : loader.apply(requirementId);
+        }
+        return cache.get(requirementId, loader);
+    }
+
+    public void invalidate(Collection<String> requirementIds) {
+        Set<String> keys = requirementIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (keys.isEmpty()) {
+            return;
+        }
+        cache.invalidateAll(keys);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidateAll(keys);
+                }
+            });
+        }
+    }
+}
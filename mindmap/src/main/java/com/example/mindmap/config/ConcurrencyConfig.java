@@ -0,0 +1,70 @@
+package com.example.mindmap.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Request execution: the API request limit, and a startup check that it fits the connection pool
+ * and that virtual threads are really in use when requested.
+ */
+@Configuration
+public class ConcurrencyConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(ConcurrencyConfig.class);
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Bean
+    public FilterRegistrationBean<RequestBulkheadFilter> requestBulkheadFilter(MeterRegistry meterRegistry) {
+        MindMapProperties.Concurrency settings = mindMapProperties.getConcurrency();
+        int maxRequests = Math.max(settings.getMaxRequests(), 1);
+        FilterRegistrationBean<RequestBulkheadFilter> registration = new FilterRegistrationBean<>(
+                new RequestBulkheadFilter(maxRequests, settings.getQueueTimeout(), meterRegistry));
+        registration.addUrlPatterns("/api/*");
+        registration.setEnabled(settings.getMaxRequests() > 0);
+        return registration;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkExecution(ApplicationReadyEvent event) {
+        Environment environment = event.getApplicationContext().getEnvironment();
+        boolean virtual = Threading.VIRTUAL.isActive(environment);
+        if (!virtual && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads; requests run on platform threads",
+                    Runtime.version().feature());
+        }
+        int maxRequests = mindMapProperties.getConcurrency().getMaxRequests();
+        int workers = mindMapProperties.getPropagation().isAsync() ? mindMapProperties.getPropagation().getWorkers() : 0;
+        Integer poolSize = poolSize(event.getApplicationContext().getBean(DataSource.class));
+        if (poolSize != null && (maxRequests <= 0 ? virtual : maxRequests + workers > poolSize)) {
+            log.warn("mindmap.concurrency.max-requests={} with {} propagation workers can exceed the {} pooled connections;"
+                    + " excess requests wait for the connection timeout", maxRequests, workers, poolSize);
+        }
+        log.info("Requests run on {} threads, at most {} at once", virtual ? "virtual" : "platform",
+                maxRequests > 0 ? maxRequests : "unlimited");
+    }
+
+    // The DataSource may be wrapped (metrics, proxies), so it is unwrapped rather than cast.
+    private static Integer poolSize(DataSource dataSource) {
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class)
+                    ? dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize() : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.mindmap.config;
+
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * When the Liquibase changelog runs, see {@link MigrationStartup}.
+ */
+@Configuration
+public class MigrationConfig {
+
+    // Static, and bound from the Environment directly: post-processors are created before MindMapProperties
+    @Bean
+    public static MigrationStartup migrationStartup(Environment environment) {
+        return new MigrationStartup(Binder.get(environment)
+                .bind("mindmap.migrations.mode", MindMapProperties.MigrationMode.class)
+                .orElse(MindMapProperties.MigrationMode.STARTUP));
+    }
+}
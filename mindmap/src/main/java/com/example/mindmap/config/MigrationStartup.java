@@ -0,0 +1,68 @@
+package com.example.mindmap.config;
+
+import liquibase.exception.LiquibaseException;
+import liquibase.integration.spring.SpringLiquibase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Applies {@code mindmap.migrations.mode} to the Liquibase bean Spring Boot configures: with
+ * DEFERRED or SKIP it does not run while the context starts, which saves the changelog parsing,
+ * lock and validation on every instance start. DEFERRED runs the same update on a background
+ * thread once the application is ready. Both expect a database the leader instance (mode STARTUP)
+ * or a migration job has already brought up to date. Requests are served while a deferred update
+ * runs, but {@link SchemaReadyEvent} is only published after it, so startup work reading whole
+ * tables, like the search index build, waits for it.
+ */
+public class MigrationStartup implements BeanPostProcessor, ApplicationListener<ApplicationReadyEvent> {
+
+    private static final Logger log = LoggerFactory.getLogger(MigrationStartup.class);
+
+    private final MindMapProperties.MigrationMode mode;
+    private SpringLiquibase liquibase;
+
+    public MigrationStartup(MindMapProperties.MigrationMode mode) {
+        this.mode = mode;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof SpringLiquibase springLiquibase && mode != MindMapProperties.MigrationMode.STARTUP) {
+            springLiquibase.setShouldRun(false);
+            liquibase = springLiquibase;
+            log.info("Liquibase changelog {} at startup (mindmap.migrations.mode={})",
+                    mode == MindMapProperties.MigrationMode.DEFERRED ? "deferred until the application is ready" : "skipped", mode);
+        }
+        return bean;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        if (mode != MindMapProperties.MigrationMode.DEFERRED || liquibase == null) {
+            context.publishEvent(new SchemaReadyEvent(this));
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            long start = System.nanoTime();
+            liquibase.setShouldRun(true);
+            try {
+                liquibase.afterPropertiesSet();
+                log.info("Deferred Liquibase update finished in {} ms", (System.nanoTime() - start) / 1_000_000);
+            } catch (LiquibaseException e) {
+                log.error("Deferred Liquibase update failed", e);
+            }
+            try {
+                context.publishEvent(new SchemaReadyEvent(this));
+            } catch (BeansException | IllegalStateException e) {
+                log.debug("Application shut down during the deferred Liquibase update", e);
+            }
+        }, "mindmap-liquibase");
+        thread.start();
+    }
+}
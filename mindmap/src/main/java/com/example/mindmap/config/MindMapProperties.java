@@ -0,0 +1,185 @@
+package com.example.mindmap.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tunables for the mind map service, bound from {@code mindmap.*} in application.properties.
+ */
+@Data
+@ConfigurationProperties(prefix = "mindmap")
+public class MindMapProperties {
+
+    private Delete delete = new Delete();
+
+    private Cache cache = new Cache();
+
+    private Tree tree = new Tree();
+
+    private Lazy lazy = new Lazy();
+
+    private BulkImport bulkImport = new BulkImport();
+
+    private Metrics metrics = new Metrics();
+
+    private Propagation propagation = new Propagation();
+
+    private Feed feed = new Feed();
+
+    private Concurrency concurrency = new Concurrency();
+
+    private Search search = new Search();
+
+    private WriteBehind writeBehind = new WriteBehind();
+
+    private ReadRouting readRouting = new ReadRouting();
+
+    private Migrations migrations = new Migrations();
+
+    @Data
+    public static class Delete {
+        // Maximum number of ids per DELETE ... WHERE id IN (...) statement
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class BulkImport {
+        // Rows per JDBC batch (one multi-row INSERT on MySQL with rewriteBatchedStatements)
+        private int chunkSize = 1000;
+        // Largest number of nodes accepted in one import request
+        private int maxNodes = 100000;
+    }
+
+    @Data
+    public static class Lazy {
+        // Upper bounds for the paged children endpoints
+        private int maxDepth = 5;
+        private int maxLimit = 500;
+        // Expansion stops once this many nodes are in one response
+        private int maxNodes = 5000;
+    }
+
+    @Data
+    public static class Propagation {
+        // When true, status changes commit the node row alone and propagate from a background queue
+        private boolean async = false;
+        // Threads running queued propagations; each requirement is handled by one thread at a time
+        private int workers = 2;
+        // Requirements waiting for a free worker; beyond this the request thread propagates itself
+        private int queueCapacity = 1000;
+        // A failed propagation (e.g. a deadlock victim) is retried this many times before it waits for the recovery sweep
+        private int maxAttempts = 3;
+        // How often queued propagations left by failed runs or stopped instances are picked up again
+        private Duration recoveryInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Feed {
+        // Committed events kept per requirement for clients reconnecting with Last-Event-ID
+        private int replaySize = 1000;
+        // Replay buffers of requirements without subscribers are dropped after this long without events
+        private Duration replayRetention = Duration.ofMinutes(10);
+        // Events queued for one subscriber; a subscriber that falls this far behind is disconnected
+        private int subscriberBuffer = 256;
+        // Threads writing events to subscribers
+        private int senderThreads = 2;
+        // Open streams are closed after this long; EventSource clients reconnect transparently
+        private Duration emitterTimeout = Duration.ofMinutes(30);
+        // Comment line sent to every open stream, so disconnected clients are detected
+        private Duration heartbeatInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Metrics {
+        // Service calls slower than this, or issuing more SQL statements than this, are logged as slow
+        private Duration slowOperationLatency = Duration.ofMillis(500);
+        private int slowOperationStatements = 100;
+    }
+
+    @Data
+    public static class Tree {
+        // Nodes whose parent is not in their requirement: DROP leaves them out, ROOT shows them as roots
+        private OrphanPolicy orphans = OrphanPolicy.DROP;
+    }
+
+    public enum OrphanPolicy {
+        DROP,
+        ROOT
+    }
+
+    @Data
+    public static class Migrations {
+        // STARTUP applies the Liquibase changelog before the application starts; DEFERRED once it is
+        // ready, in the background; SKIP never (another instance or a migration job does it)
+        private MigrationMode mode = MigrationMode.STARTUP;
+    }
+
+    public enum MigrationMode {
+        STARTUP,
+        DEFERRED,
+        SKIP
+    }
+
+    @Data
+    public static class Cache {
+        private TreeCache tree = new TreeCache();
+    }
+
+    @Data
+    public static class TreeCache {
+        private boolean enabled = true;
+        // Number of requirement trees kept in memory
+        private long maximumSize = 500;
+        // Entries are reloaded at least this often even without local writes (other instances may write)
+        private Duration expireAfterWrite = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Concurrency {
+        // /api requests executing at once; keep below the connection pool size (0 disables the limit)
+        private int maxRequests = 16;
+        // How long a request waits for a free slot before it is rejected with 503
+        private Duration queueTimeout = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class Search {
+        // Upper bound for the limit parameter of the search endpoint
+        private int maxLimit = 100;
+    }
+
+    @Data
+    public static class WriteBehind {
+        // When true, description and remarks edits are buffered in memory and written in batches
+        private boolean enabled = false;
+        // Buffered edits are written at least this often
+        private Duration flushInterval = Duration.ofSeconds(2);
+        // A flush starts early once this many nodes have buffered edits
+        private int maxPending = 1000;
+    }
+
+    @Data
+    public static class ReadRouting {
+        // When true, read-only transactions go to the replicas and the primary is spring.datasource.*
+        private boolean enabled = false;
+        // After a write, the writing client reads the requirement from the primary for this long;
+        // keep it above the replication lag (plus the write-behind flush interval when that is on)
+        private Duration readYourWritesWindow = Duration.ofSeconds(5);
+        private List<Replica> replicas = new ArrayList<>();
+    }
+
+    @Data
+    public static class Replica {
+        private String url;
+        // Default to the primary's credentials and driver
+        private String username;
+        private String password;
+        private String driverClassName;
+        // Applies the Liquibase changelog to the replica at startup; for local stand-ins that do not replicate
+        private boolean initialize = false;
+    }
+}
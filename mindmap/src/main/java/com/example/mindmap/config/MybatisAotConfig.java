@@ -0,0 +1,72 @@
+package com.example.mindmap.config;
+
+import org.mybatis.spring.SqlSessionTemplate;
+import org.mybatis.spring.mapper.MapperFactoryBean;
+import org.mybatis.spring.mapper.MapperScannerConfigurer;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.beans.factory.aot.BeanRegistrationExcludeFilter;
+import org.springframework.beans.factory.config.ConstructorArgumentValues;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.MergedBeanDefinitionPostProcessor;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.ResolvableType;
+
+/**
+ * Lets the {@code @MapperScan} mappers survive Spring AOT processing (the fast-startup build);
+ * mybatis-spring has no AOT support of its own. Without AOT both parts change nothing visible.
+ */
+@Configuration
+public class MybatisAotConfig {
+
+    @Bean
+    public static MapperFactoryBeanTypes mapperFactoryBeanTypes() {
+        return new MapperFactoryBeanTypes();
+    }
+
+    /**
+     * The scanner passes each mapper interface to its {@link MapperFactoryBean} as a class name,
+     * which generated code cannot turn into the {@code Class} constructor argument, and leaves the
+     * session template to autowiring by type, which generated code does not do. Passes the class
+     * itself, declares the mapper type so it is known without creating the factory bean, and
+     * references the template explicitly.
+     */
+    static class MapperFactoryBeanTypes implements MergedBeanDefinitionPostProcessor {
+
+        @Override
+        public void postProcessMergedBeanDefinition(RootBeanDefinition beanDefinition, Class<?> beanType, String beanName) {
+            if (!beanDefinition.hasBeanClass() || !MapperFactoryBean.class.isAssignableFrom(beanDefinition.getBeanClass())
+                    || !beanDefinition.getResolvableType().hasUnresolvableGenerics()) {
+                return;
+            }
+            // Set by the scanner next to the class name
+            if (beanDefinition.getPropertyValues().get("mapperInterface") instanceof Class<?> mapperInterface) {
+                ConstructorArgumentValues arguments = new ConstructorArgumentValues();
+                arguments.addGenericArgumentValue(mapperInterface);
+                beanDefinition.setConstructorArgumentValues(arguments);
+                beanDefinition.setTargetType(ResolvableType.forClassWithGenerics(beanDefinition.getBeanClass(), mapperInterface));
+            }
+            MutablePropertyValues properties = beanDefinition.getPropertyValues();
+            if (beanDefinition.getResolvedAutowireMode() == AbstractBeanDefinition.AUTOWIRE_BY_TYPE
+                    && !properties.contains("sqlSessionTemplate") && !properties.contains("sqlSessionFactory")) {
+                properties.add("sqlSessionTemplate", new RuntimeBeanReference(SqlSessionTemplate.class));
+                beanDefinition.setAutowireMode(AbstractBeanDefinition.AUTOWIRE_NO);
+            }
+        }
+    }
+
+    /**
+     * Leaves the scanner itself out of the generated context: the mapper bean definitions it
+     * registered are already part of it, and scanning again at runtime would register them twice.
+     */
+    static class MapperScannerExcludeFilter implements BeanRegistrationExcludeFilter {
+
+        @Override
+        public boolean isExcludedFromAotProcessing(RegisteredBean registeredBean) {
+            return MapperScannerConfigurer.class == registeredBean.getBeanClass();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.mindmap.config;
+
+import com.example.mindmap.routing.ReadRoutingDataSource;
+import com.example.mindmap.routing.ReadYourWritesFilter;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import liquibase.integration.spring.SpringLiquibase;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas ({@code mindmap.read-routing.*}): replaces the auto-configured data source with a
+ * {@link ReadRoutingDataSource} over the primary ({@code spring.datasource.*}) and the replicas, and
+ * registers the read-your-writes filter. All pools share the {@code spring.datasource.hikari.*}
+ * settings. Liquibase, MyBatis and the transaction manager use the routing data source, so
+ * migrations and writes go to the primary.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "mindmap.read-routing", name = "enabled", havingValue = "true")
+public class ReadRoutingConfig {
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private Environment environment;
+
+    @Bean
+    public ReadRoutingDataSource readRoutingDataSource(DataSourceProperties dataSourceProperties,
+                                                       ResourceLoader resourceLoader, MeterRegistry meterRegistry) throws Exception {
+        List<MindMapProperties.Replica> replicaSettings = mindMapProperties.getReadRouting().getReplicas();
+        if (replicaSettings.isEmpty()) {
+            throw new IllegalStateException("mindmap.read-routing.enabled=true needs at least one mindmap.read-routing.replicas[n].url");
+        }
+        HikariDataSource primary = pool(dataSourceProperties.initializeDataSourceBuilder(), "mindmap-primary");
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaSettings.size(); i++) {
+            MindMapProperties.Replica settings = replicaSettings.get(i);
+            DataSourceBuilder<?> builder = dataSourceProperties.initializeDataSourceBuilder().url(settings.getUrl());
+            if (settings.getUsername() != null) {
+                builder.username(settings.getUsername()).password(settings.getPassword());
+            }
+            if (settings.getDriverClassName() != null) {
+                builder.driverClassName(settings.getDriverClassName());
+            }
+            HikariDataSource replica = pool(builder, "mindmap-replica-" + i);
+            replicas.add(replica);
+            if (settings.isInitialize()) {
+                SpringLiquibase liquibase = new SpringLiquibase();
+                liquibase.setDataSource(replica);
+                liquibase.setChangeLog(environment.getProperty("spring.liquibase.change-log",
+                        "classpath:/db/changelog/db.changelog-master.yaml"));
+                liquibase.setResourceLoader(resourceLoader);
+                liquibase.afterPropertiesSet();
+            }
+        }
+        return new ReadRoutingDataSource(primary, replicas, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadRoutingDataSource readRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(readRoutingDataSource);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter() {
+        FilterRegistrationBean<ReadYourWritesFilter> registration = new FilterRegistrationBean<>(
+                new ReadYourWritesFilter(mindMapProperties.getReadRouting().getReadYourWritesWindow()));
+        registration.addUrlPatterns("/api/*");
+        return registration;
+    }
+
+    private HikariDataSource pool(DataSourceBuilder<?> builder, String name) {
+        HikariDataSource pool = builder.type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        return pool;
+    }
+}
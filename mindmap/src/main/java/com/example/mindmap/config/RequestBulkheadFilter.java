@@ -0,0 +1,72 @@
+package com.example.mindmap.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caps the number of API requests executing at once. Requests beyond the cap wait in arrival
+ * order for up to the queue timeout and are then answered with 503 and {@code Retry-After}.
+ * <p>
+ * On platform threads Tomcat's worker pool is an implicit cap; on virtual threads there is
+ * none, and without this filter every request would queue on the connection pool until its
+ * connection timeout fails it.
+ */
+public class RequestBulkheadFilter extends OncePerRequestFilter {
+
+    private final int maxRequests;
+    private final Semaphore permits;
+    private final long queueTimeoutNanos;
+    private final Counter rejected;
+
+    public RequestBulkheadFilter(int maxRequests, Duration queueTimeout, MeterRegistry meterRegistry) {
+        this.maxRequests = maxRequests;
+        this.permits = new Semaphore(maxRequests, true);
+        this.queueTimeoutNanos = queueTimeout.toNanos();
+        Gauge.builder("mindmap.requests.active", permits, p -> this.maxRequests - p.availablePermits())
+                .description("API requests holding a concurrency slot")
+                .register(meterRegistry);
+        Gauge.builder("mindmap.requests.queued", permits, Semaphore::getQueueLength)
+                .description("API requests waiting for a concurrency slot")
+                .register(meterRegistry);
+        rejected = Counter.builder("mindmap.requests.rejected")
+                .description("API requests rejected with 503 after waiting for a slot")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(queueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejected.increment();
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            // Streaming responses (SSE) release here, once the handler has returned the emitter
+            permits.release();
+        }
+    }
+}
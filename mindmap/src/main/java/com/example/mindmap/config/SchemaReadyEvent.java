@@ -0,0 +1,16 @@
+package com.example.mindmap.config;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published once the application is ready and the Liquibase changelog is no longer running: right
+ * after {@code ApplicationReadyEvent} with {@code mindmap.migrations.mode} STARTUP or SKIP, after
+ * the background update with DEFERRED. Work that reads whole tables at startup listens for this
+ * instead, so it never reads rows a changeset is still rewriting.
+ */
+public class SchemaReadyEvent extends ApplicationEvent {
+
+    public SchemaReadyEvent(Object source) {
+        super(source);
+    }
+}
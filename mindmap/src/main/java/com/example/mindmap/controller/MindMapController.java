@@ -1,14 +1,39 @@
 package com.example.mindmap.controller;
 
+import com.example.mindmap.config.MindMapProperties;
 import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.WorkloadRole;
 import com.example.mindmap.service.MindMapService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
 import com.example.mindmap.dto.MindMapNodeDto; // Add this import
+import com.example.mindmap.controller.dto.MoveNodeRequest;
+import com.example.mindmap.controller.dto.SubtreeDeleteResponse;
+import com.example.mindmap.dto.BatchStatusUpdateResultDto;
+import com.example.mindmap.dto.NodeImportReportDto;
+import com.example.mindmap.dto.NodePageDto;
+import com.example.mindmap.dto.NodeSearchResultDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import com.example.mindmap.tree.MindMapTree;
 
 @RestController
 @RequestMapping("/api/mindmap")
@@ -17,6 +42,9 @@ public class MindMapController {
     @Autowired
     private MindMapService mindMapService;
 
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
     // Add a new node
     // POST /api/mindmap/nodes
     @PostMapping("/nodes")
@@ -29,6 +57,30 @@ public class MindMapController {
         }
     }
 
+    // Import whole trees in one call, below parentId or as new roots
+    // POST /api/mindmap/nodes/import?parentId={parentId}   (nested JSON array, MindMapNodeDto shape)
+    @PostMapping(value = "/nodes/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<NodeImportReportDto> importNodes(@RequestParam(required = false) Long parentId,
+                                                           @RequestBody List<MindMapNodeDto> roots) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(mindMapService.importNodes(parentId, roots));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // Same, streamed: one flat node per line, linked by the client's own id / parentId
+    // POST /api/mindmap/nodes/import?parentId={parentId}   (Content-Type: application/x-ndjson)
+    @PostMapping(value = "/nodes/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<NodeImportReportDto> importNodesNdjson(@RequestParam(required = false) Long parentId,
+                                                                 HttpServletRequest request) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(mindMapService.importNodesNdjson(parentId, request.getInputStream()));
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
     // Get a node by its ID
     // GET /api/mindmap/nodes/{nodeId}
     @GetMapping("/nodes/{nodeId}")
@@ -43,21 +95,110 @@ public class MindMapController {
 
     // Get all nodes for a specific requirement ID (forms a mind map)
     // GET /api/mindmap/requirements/{requirementId}/nodes
+    // The ETag is the requirement's revision plus how the body is built; a matching If-None-Match is
+    // answered with 304 after a single revision lookup, without loading or serializing any node.
     @GetMapping("/requirements/{requirementId}/nodes")
-    // public ResponseEntity<List<MindMapNode>> getMindMapByRequirementId(@PathVariable String requirementId) { // Old
-    public ResponseEntity<List<MindMapNodeDto>> getMindMapByRequirementId(@PathVariable String requirementId) { // New
-        List<MindMapNodeDto> nodesTree = mindMapService.getMindMapByRequirementId(requirementId);
-        // No change needed here if nodesTree is an empty list for no data, 
-        // service layer already handles returning List.of()
-        return ResponseEntity.ok(nodesTree);
+    public ResponseEntity<MindMapTree> getMindMapByRequirementId(@PathVariable String requirementId, WebRequest webRequest) {
+        // Read the revision before the tree: if a write lands in between, the client just refetches next time.
+        String etag = etag(requirementId, "json");
+        if (webRequest.checkNotModified(etag)) {
+            return null; // 304 Not Modified has already been prepared by checkNotModified
+        }
+        // Compact tree, written as the nested JSON of MindMapNodeDto without creating the DTOs
+        MindMapTree nodesTree = mindMapService.getMindMapTree(requirementId);
+        // An unknown requirement yields MindMapTree.EMPTY, written as []
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(nodesTree);
+    }
+
+    // Same tree as parallel arrays, chosen with Accept: application/vnd.mindmap.tree+json.
+    // Rich-text columns are opt-in through include (default description), so clients that only
+    // draw the outline do not download remarks.
+    @GetMapping(value = "/requirements/{requirementId}/nodes", produces = MindMapTree.FLAT_MEDIA_TYPE)
+    public ResponseEntity<?> getFlatMindMapByRequirementId(@PathVariable String requirementId,
+                                                           @RequestParam(defaultValue = "description") List<String> include,
+                                                           WebRequest webRequest) {
+        Set<MindMapTree.TextColumn> textColumns = EnumSet.noneOf(MindMapTree.TextColumn.class);
+        try {
+            for (String column : include) {
+                if (!column.isBlank()) {
+                    textColumns.add(MindMapTree.TextColumn.of(column.trim()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // The body depends on the columns, so they are part of the ETag
+        String etag = etag(requirementId, "flat" + textColumns.stream()
+                .map(column -> "-" + column.ordinal()).collect(Collectors.joining()));
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        MindMapTree nodesTree = mindMapService.getMindMapTree(requirementId);
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT)
+                .contentType(MediaType.parseMediaType(MindMapTree.FLAT_MEDIA_TYPE))
+                .body(nodesTree.flat(textColumns));
+    }
+
+    // Stream the same tree without materializing it; meant for very large requirements
+    // GET /api/mindmap/requirements/{requirementId}/nodes/export
+    @GetMapping(value = "/requirements/{requirementId}/nodes/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public void exportMindMap(@PathVariable String requirementId, WebRequest webRequest,
+                              HttpServletResponse response) throws IOException {
+        String etag = etag(requirementId, "json");
+        if (webRequest.checkNotModified(etag)) {
+            return;
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        mindMapService.exportMindMap(requirementId, response.getOutputStream());
+    }
+
+    // Besides the revision, everything else the tree body depends on: its format and the orphan
+    // policy, so a changed mindmap.tree.orphans is not answered with 304 for a body built the old way
+    private String etag(String requirementId, String representation) {
+        return "\"" + mindMapService.getRequirementRevision(requirementId) + "-" + representation
+                + "-" + mindMapProperties.getTree().getOrphans().name().toLowerCase(Locale.ROOT) + "\"";
+    }
+
+    // Lazily load a node's children, one page of siblings at a time
+    // GET /api/mindmap/nodes/{nodeId}/children?depth=1&limit=50&after={cursor}
+    @GetMapping("/nodes/{nodeId}/children")
+    public ResponseEntity<NodePageDto> getChildren(@PathVariable Long nodeId,
+                                                   @RequestParam(defaultValue = "1") int depth,
+                                                   @RequestParam(defaultValue = "50") int limit,
+                                                   @RequestParam(required = false) Long after) {
+        try {
+            NodePageDto page = mindMapService.getChildren(nodeId, depth, limit, after);
+            if (page != null) {
+                return ResponseEntity.ok(page);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // Lazily load the root nodes of a requirement
+    // GET /api/mindmap/requirements/{requirementId}/roots?depth=2&limit=50&after={cursor}
+    @GetMapping("/requirements/{requirementId}/roots")
+    public ResponseEntity<NodePageDto> getRootNodes(@PathVariable String requirementId,
+                                                    @RequestParam(defaultValue = "1") int depth,
+                                                    @RequestParam(defaultValue = "50") int limit,
+                                                    @RequestParam(required = false) Long after) {
+        try {
+            return ResponseEntity.ok(mindMapService.getRootNodes(requirementId, depth, limit, after));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
     }
 
     // Delete a node and all its children
     // DELETE /api/mindmap/nodes/{nodeId}/tree
     @DeleteMapping("/nodes/{nodeId}/tree")
-    public ResponseEntity<Void> deleteNodeAndChildren(@PathVariable Long nodeId) {
-        mindMapService.deleteNodeAndChildren(nodeId);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<SubtreeDeleteResponse> deleteNodeAndChildren(@PathVariable Long nodeId) {
+        int deletedCount = mindMapService.deleteNodeAndChildren(nodeId);
+        return ResponseEntity.ok(new SubtreeDeleteResponse(nodeId, deletedCount));
     }
 
     // Delete a node but keep its children (re-parenting them)
@@ -68,12 +209,31 @@ public class MindMapController {
         return ResponseEntity.noContent().build();
     }
 
+    // Move a node with its whole subtree under another parent (or to the root level)
+    // PUT /api/mindmap/nodes/{nodeId}/parent
+    @PutMapping("/nodes/{nodeId}/parent")
+    public ResponseEntity<MindMapNode> moveNode(@PathVariable Long nodeId, @RequestBody MoveNodeRequest request) {
+        try {
+            MindMapNode movedNode = mindMapService.moveNode(nodeId, request.getNewParentId(), request.getRequirementId());
+            if (movedNode != null) {
+                return ResponseEntity.ok(movedNode);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null); // unknown target, cycle or requirement mismatch
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build(); // target moved meanwhile, retry
+        }
+    }
+
     // Update a node's description
-    // PUT /api/mindmap/nodes/{nodeId}/description
+    // PUT /api/mindmap/nodes/{nodeId}/description?version={version}
     @PutMapping("/nodes/{nodeId}/description")
-    public ResponseEntity<MindMapNode> updateNodeDescription(@PathVariable Long nodeId, @RequestBody String description) {
+    public ResponseEntity<MindMapNode> updateNodeDescription(@PathVariable Long nodeId, @RequestBody String description,
+                                                             @RequestParam(required = false) Integer version) {
         try {
-            MindMapNode updatedNode = mindMapService.updateNodeDescription(nodeId, description);
+            MindMapNode updatedNode = mindMapService.updateNodeDescription(nodeId, description, version);
             if (updatedNode != null) {
                 return ResponseEntity.ok(updatedNode);
             } else {
@@ -81,15 +241,18 @@ public class MindMapController {
             }
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(null); // Consider a proper error response
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build(); // stale version, re-read the node and retry
         }
     }
 
     // Update a node's remarks
-    // PUT /api/mindmap/nodes/{nodeId}/remarks
+    // PUT /api/mindmap/nodes/{nodeId}/remarks?version={version}
     @PutMapping("/nodes/{nodeId}/remarks")
-    public ResponseEntity<MindMapNode> updateNodeRemarks(@PathVariable Long nodeId, @RequestBody(required = false) String remarks) {
+    public ResponseEntity<MindMapNode> updateNodeRemarks(@PathVariable Long nodeId, @RequestBody(required = false) String remarks,
+                                                         @RequestParam(required = false) Integer version) {
         try {
-            MindMapNode updatedNode = mindMapService.updateNodeRemarks(nodeId, remarks);
+            MindMapNode updatedNode = mindMapService.updateNodeRemarks(nodeId, remarks, version);
             if (updatedNode != null) {
                 return ResponseEntity.ok(updatedNode);
             } else {
@@ -98,16 +261,19 @@ public class MindMapController {
         } catch (IllegalArgumentException e) {
             // This path might not be hit if only nodeId is validated strictly in service for remarks
             return ResponseEntity.badRequest().body(null); 
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
     // Set the status of a single node
-    // PUT /api/mindmap/nodes/{nodeId}/status
+    // PUT /api/mindmap/nodes/{nodeId}/status?version={version}
     @PutMapping("/nodes/{nodeId}/status")
-    public ResponseEntity<MindMapNode> setNodeStatus(@PathVariable Long nodeId, @RequestBody com.example.mindmap.entity.NodeStatus status) {
+    public ResponseEntity<MindMapNode> setNodeStatus(@PathVariable Long nodeId, @RequestBody com.example.mindmap.entity.NodeStatus status,
+                                                     @RequestParam(required = false) Integer version) {
         // Spring should be able to convert the JSON string "PENDING_TEST" to NodeStatus enum directly
         try {
-            MindMapNode updatedNode = mindMapService.setNodeStatus(nodeId, status);
+            MindMapNode updatedNode = mindMapService.setNodeStatus(nodeId, status, version);
             if (updatedNode != null) {
                 return ResponseEntity.ok(updatedNode);
             } else {
@@ -115,25 +281,80 @@ public class MindMapController {
             }
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(null); // Or a proper error object
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
     }
 
     // Batch set the status for multiple nodes
     // PUT /api/mindmap/nodes/status/batch
     @PutMapping("/nodes/status/batch")
-    public ResponseEntity<List<MindMapNode>> batchSetNodeStatus(@RequestBody com.example.mindmap.controller.dto.BatchStatusUpdateRequest request) {
+    public ResponseEntity<BatchStatusUpdateResultDto> batchSetNodeStatus(@RequestBody com.example.mindmap.controller.dto.BatchStatusUpdateRequest request) {
         if (request == null || request.getNodeIds() == null || request.getNodeIds().isEmpty() || request.getStatus() == null) {
             return ResponseEntity.badRequest().body(null); // Basic validation for the request object
         }
         try {
-            List<MindMapNode> updatedNodes = mindMapService.batchSetNodeStatus(request.getNodeIds(), request.getStatus());
-            // Decide on response: OK with list, or OK with count, etc.
+            BatchStatusUpdateResultDto result = mindMapService.batchSetNodeStatus(request.getNodeIds(), request.getStatus(), request.getVersions());
             // If some nodes in the batch were not found, the service currently skips them.
-            // The response will contain only the nodes that were successfully updated.
-            return ResponseEntity.ok(updatedNodes);
+            // Version conflicts do not fail the batch; they are listed next to the updated nodes.
+            return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             // This catches validation errors from the service layer (e.g. empty list after filtering)
             return ResponseEntity.badRequest().body(null);
         }
     }
+
+    // Full-text search across all requirements; q searches description and remarks, the other parameters filter
+    // GET /api/mindmap/search?q=login+timeout&requirementId=&tester=&developer=&limit=20
+    @GetMapping("/search")
+    public ResponseEntity<NodeSearchResultDto> searchNodes(@RequestParam(required = false) String q,
+                                                           @RequestParam(required = false) String requirementId,
+                                                           @RequestParam(required = false) String tester,
+                                                           @RequestParam(required = false) String developer,
+                                                           @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(mindMapService.searchNodes(q, requirementId, tester, developer, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // Live feed of committed node changes as server-sent events; reconnecting clients send Last-Event-ID to catch up
+    // GET /api/mindmap/requirements/{requirementId}/changes
+    @GetMapping(value = "/requirements/{requirementId}/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@PathVariable String requirementId,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return mindMapService.subscribeToChanges(requirementId, lastEventId);
+    }
+
+    // Status changes saved but not yet propagated (only ever non-empty with mindmap.propagation.async=true)
+    // GET /api/mindmap/requirements/{requirementId}/propagation
+    @GetMapping("/requirements/{requirementId}/propagation")
+    public ResponseEntity<PropagationStateDto> getPropagationState(@PathVariable String requirementId) {
+        return ResponseEntity.ok(mindMapService.getPropagationState(requirementId));
+    }
+
+    // PENDING_TEST / TESTED / CANCELLED nodes of every tester and developer of a requirement, optionally of one role
+    // GET /api/mindmap/requirements/{requirementId}/workload?role=TESTER
+    @GetMapping("/requirements/{requirementId}/workload")
+    public ResponseEntity<List<PersonWorkload>> getRequirementWorkload(@PathVariable String requirementId,
+                                                                       @RequestParam(required = false) WorkloadRole role) {
+        try {
+            return ResponseEntity.ok(mindMapService.getRequirementWorkload(requirementId, role));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
+
+    // The same for one person, per requirement
+    // GET /api/mindmap/workload?person=tester_A&role=TESTER
+    @GetMapping("/workload")
+    public ResponseEntity<List<PersonWorkload>> getPersonWorkload(@RequestParam(required = false) String person,
+                                                                  @RequestParam(required = false) WorkloadRole role) {
+        try {
+            return ResponseEntity.ok(mindMapService.getPersonWorkload(person, role));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(null);
+        }
+    }
 }
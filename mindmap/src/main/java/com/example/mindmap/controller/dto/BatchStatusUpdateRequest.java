@@ -2,10 +2,13 @@ package com.example.mindmap.controller.dto;
 
 import com.example.mindmap.entity.NodeStatus;
 import java.util.List;
+import java.util.Map;
 import lombok.Data;
 
 @Data
 public class BatchStatusUpdateRequest {
     private List<Long> nodeIds;
     private NodeStatus status;
+    // Optional expected version per node id; nodes whose version differs are reported as conflicts
+    private Map<Long, Integer> versions;
 }
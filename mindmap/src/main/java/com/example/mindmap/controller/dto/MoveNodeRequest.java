@@ -0,0 +1,11 @@
+package com.example.mindmap.controller.dto;
+
+import lombok.Data;
+
+@Data
+public class MoveNodeRequest {
+    // New parent; null makes the node a root
+    private Long newParentId;
+    // Optional; must match the new parent's requirement, or re-homes the node when it becomes a root
+    private String requirementId;
+}
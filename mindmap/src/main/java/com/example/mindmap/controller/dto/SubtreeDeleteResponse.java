@@ -0,0 +1,14 @@
+package com.example.mindmap.controller.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubtreeDeleteResponse {
+    private Long nodeId;
+    // Rows removed, the node itself included; 0 if the node did not exist
+    private int deletedCount;
+}
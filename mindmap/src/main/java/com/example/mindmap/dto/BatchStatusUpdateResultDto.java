@@ -0,0 +1,28 @@
+package com.example.mindmap.dto;
+
+import com.example.mindmap.entity.MindMapNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class BatchStatusUpdateResultDto {
+    // Final state of the updated batch nodes, followed by every ancestor whose status changed
+    private List<MindMapNode> nodes = new ArrayList<>();
+    // Batch nodes left untouched because their version did not match
+    private List<VersionConflict> conflicts = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class VersionConflict {
+        private Long nodeId;
+        private Integer expectedVersion;
+        // null if the node was deleted meanwhile
+        private Integer currentVersion;
+    }
+}
@@ -2,13 +2,11 @@ package com.example.mindmap.dto;
 
 import com.example.mindmap.entity.NodeStatus;
 import lombok.Data;
-import lombok.NoArgsConstructor;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Data
-@NoArgsConstructor
 public class MindMapNodeDto {
     private Long id;
     private Long parentId;
@@ -20,12 +18,16 @@ public class MindMapNodeDto {
     private String tester;
     private String requirementReference;
     private NodeStatus status;
-    private List<MindMapNodeDto> children = new ArrayList<>();
+    private List<MindMapNodeDto> children;
 
-    // Consider a constructor to map from MindMapNode entity if needed, or use a mapping library
+    public MindMapNodeDto() {
+        this.children = new ArrayList<>();
+    }
+
+    // children is used as given; assembled trees pass lists of exactly the right size, or List.of() for leaves
     public MindMapNodeDto(Long id, Long parentId, String description, String remarks, String requirementId,
                           String backendDeveloper, String frontendDeveloper, String tester,
-                          String requirementReference, NodeStatus status) {
+                          String requirementReference, NodeStatus status, List<MindMapNodeDto> children) {
         this.id = id;
         this.parentId = parentId;
         this.description = description;
@@ -36,5 +38,6 @@ public class MindMapNodeDto {
         this.tester = tester;
         this.requirementReference = requirementReference;
         this.status = status;
+        this.children = children;
     }
 }
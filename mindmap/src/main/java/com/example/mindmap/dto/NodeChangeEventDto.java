@@ -0,0 +1,47 @@
+package com.example.mindmap.dto;
+
+import com.example.mindmap.entity.NodeStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One committed change of a node, as streamed by the requirement change feed.
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NodeChangeEventDto {
+
+    public enum Type {
+        NODE_ADDED,
+        NODE_DELETED,
+        NODE_REPARENTED,
+        // description or remarks; see field
+        NODE_UPDATED,
+        STATUS_CHANGED
+    }
+
+    // Position in the requirement's feed, assigned after commit; also the SSE event id
+    private long sequence;
+    private Type type;
+    private String requirementId;
+    private Long nodeId;
+    // New parent for NODE_ADDED / NODE_REPARENTED
+    private Long parentId;
+    private NodeStatus status;
+    // Name of the changed field for NODE_UPDATED
+    private String field;
+    // Node version after a direct edit; not set for cascaded changes
+    private Integer version;
+    // The change applies to the node and its whole subtree (subtree added, deleted or set to status)
+    private boolean subtree;
+
+    public static NodeChangeEventDto of(Type type, String requirementId, Long nodeId) {
+        NodeChangeEventDto event = new NodeChangeEventDto();
+        event.setType(type);
+        event.setRequirementId(requirementId);
+        event.setNodeId(nodeId);
+        return event;
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.mindmap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class NodeImportReportDto {
+    private int importedCount;
+    // Database ids of the imported top-level nodes
+    private List<Long> rootIds = new ArrayList<>();
+    // One entry per imported node, in input order
+    private List<IdMapping> idMapping = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class IdMapping {
+        // Position in the input: pre-order index for nested JSON, record number for NDJSON (both 0-based)
+        private int index;
+        // The id the client sent for this node, if any
+        private Long sourceId;
+        // The id assigned by the database
+        private Long id;
+        private Long parentId;
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.mindmap.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NodePageDto {
+    private List<NodeSummaryDto> items;
+    // Pass as "after" to fetch the next page of siblings; null on the last page
+    private Long nextCursor;
+}
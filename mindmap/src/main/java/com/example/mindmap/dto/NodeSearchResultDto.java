@@ -0,0 +1,34 @@
+package com.example.mindmap.dto;
+
+import com.example.mindmap.entity.MindMapNode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class NodeSearchResultDto {
+    // Number of all matching nodes, also beyond the limit
+    private long total;
+    // False while the index is still being built at startup
+    private boolean complete;
+    private List<Hit> hits = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    public static class Hit {
+        private MindMapNode node;
+        private float score;
+        // Ancestors from the root down to the node's parent
+        private List<PathElement> path = new ArrayList<>();
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class PathElement {
+        private Long id;
+        private String description;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.mindmap.dto;
+
+import com.example.mindmap.entity.NodeStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+// Lightweight node for lazy tree rendering: no rich-text remarks/reference, plus subtree counts.
+@Data
+@NoArgsConstructor
+public class NodeSummaryDto {
+    private Long id;
+    private Long parentId;
+    private String description;
+    private String requirementId;
+    private String backendDeveloper;
+    private String frontendDeveloper;
+    private String tester;
+    private NodeStatus status;
+    // Number of direct children
+    private long childCount;
+    // Number of descendants (the node itself excluded) per status
+    private Map<NodeStatus, Long> descendantStatusCounts = new EnumMap<>(NodeStatus.class);
+    // Loaded children, only present when the requested depth reaches them
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<NodeSummaryDto> children;
+    // True when children were loaded but truncated to the page limit
+    private boolean hasMoreChildren;
+}
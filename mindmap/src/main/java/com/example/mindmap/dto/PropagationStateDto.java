@@ -0,0 +1,23 @@
+package com.example.mindmap.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class PropagationStateDto {
+    private String requirementId;
+    // Whether status changes of this instance propagate in the background (mindmap.propagation.async)
+    private boolean async;
+    // Nodes whose new status is saved but not yet propagated to their subtree and ancestors, oldest first, on any instance
+    private List<Long> pendingNodeIds = new ArrayList<>();
+    // A worker of this instance is propagating a batch for this requirement right now
+    private boolean running;
+    // Runs of this instance, until the requirement has been idle for a recovery interval
+    private long completedRuns;
+    private Instant lastCompletedAt;
+}
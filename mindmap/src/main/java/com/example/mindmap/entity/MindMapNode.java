@@ -3,6 +3,7 @@ package com.example.mindmap.entity;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.baomidou.mybatisplus.annotation.Version;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -41,4 +42,24 @@ public class MindMapNode {
 
     // Status (default: PENDING_TEST)
     private NodeStatus status = NodeStatus.PENDING_TEST;
+
+    // Materialized hierarchy path, e.g. "/100/102/201/" (maintained by the service, see NodePaths)
+    private String path;
+
+    // Distance from the root node (maintained by the service)
+    private Integer depth;
+
+    // Number of direct children per status (maintained incrementally by the service)
+    private Integer childPendingCount;
+    private Integer childTestedCount;
+    private Integer childCancelledCount;
+
+    // Number of descendants, the node itself excluded, per status (maintained incrementally by the service)
+    private Integer descPendingCount;
+    private Integer descTestedCount;
+    private Integer descCancelledCount;
+
+    // Optimistic-lock version, bumped by every edit of the node's own description, remarks or status
+    @Version
+    private Integer version;
 }
@@ -0,0 +1,30 @@
+package com.example.mindmap.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of nodes per {@link NodeStatus} assigned to one person in one role of one requirement: a
+ * row of the {@code workload_summary} table, maintained incrementally with every node change. Also
+ * used for the deltas applied to it.
+ */
+@Data
+@NoArgsConstructor
+public class PersonWorkload {
+
+    private String requirementId;
+
+    private WorkloadRole role;
+
+    private String person;
+
+    private int pending;
+
+    private int tested;
+
+    private int cancelled;
+
+    public int getTotal() {
+        return pending + tested + cancelled;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.mindmap.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A status change waiting for asynchronous propagation: a row of the {@code propagation_queue}
+ * table, written in the transaction of the click and deleted by the run that propagates it.
+ */
+@Data
+@NoArgsConstructor
+public class QueuedPropagation {
+
+    private Long id;
+
+    // The node's requirement, '' when it has none
+    private String requirementId;
+
+    private Long nodeId;
+
+    private String path;
+
+    // Null only recounts the node's ancestors
+    private NodeStatus status;
+
+    // Revision of the requirement committed with the click; orders clicks of all instances by commit
+    private long revision;
+
+    private int attempts;
+}
@@ -0,0 +1,117 @@
+package com.example.mindmap.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of nodes per {@link NodeStatus}; used both for the persisted child / descendant
+ * counters of {@link MindMapNode} and for the deltas applied to them.
+ */
+@Data
+@NoArgsConstructor
+public class StatusCounts {
+
+    private int pending;
+    private int tested;
+    private int cancelled;
+
+    public static StatusCounts of(NodeStatus status, int count) {
+        StatusCounts counts = new StatusCounts();
+        counts.add(status, count);
+        return counts;
+    }
+
+    public static StatusCounts childrenOf(MindMapNode node) {
+        StatusCounts counts = new StatusCounts();
+        counts.pending = valueOf(node.getChildPendingCount());
+        counts.tested = valueOf(node.getChildTestedCount());
+        counts.cancelled = valueOf(node.getChildCancelledCount());
+        return counts;
+    }
+
+    public static StatusCounts descendantsOf(MindMapNode node) {
+        StatusCounts counts = new StatusCounts();
+        counts.pending = valueOf(node.getDescPendingCount());
+        counts.tested = valueOf(node.getDescTestedCount());
+        counts.cancelled = valueOf(node.getDescCancelledCount());
+        return counts;
+    }
+
+    public int get(NodeStatus status) {
+        switch (status) {
+            case TESTED:
+                return tested;
+            case CANCELLED:
+                return cancelled;
+            default:
+                return pending;
+        }
+    }
+
+    public StatusCounts add(NodeStatus status, int count) {
+        switch (status) {
+            case TESTED:
+                tested += count;
+                break;
+            case CANCELLED:
+                cancelled += count;
+                break;
+            default:
+                pending += count;
+        }
+        return this;
+    }
+
+    public StatusCounts add(StatusCounts other) {
+        pending += other.pending;
+        tested += other.tested;
+        cancelled += other.cancelled;
+        return this;
+    }
+
+    public StatusCounts negate() {
+        StatusCounts counts = new StatusCounts();
+        counts.pending = -pending;
+        counts.tested = -tested;
+        counts.cancelled = -cancelled;
+        return counts;
+    }
+
+    public int total() {
+        return pending + tested + cancelled;
+    }
+
+    public boolean isZero() {
+        return pending == 0 && tested == 0 && cancelled == 0;
+    }
+
+    // The status every counted node shares, or null if they differ or nothing is counted.
+    public NodeStatus uniformStatus() {
+        int total = total();
+        if (total == 0) {
+            return null;
+        }
+        for (NodeStatus status : NodeStatus.values()) {
+            if (get(status) == total) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    public void writeChildrenTo(MindMapNode node) {
+        node.setChildPendingCount(pending);
+        node.setChildTestedCount(tested);
+        node.setChildCancelledCount(cancelled);
+    }
+
+    public void writeDescendantsTo(MindMapNode node) {
+        node.setDescPendingCount(pending);
+        node.setDescTestedCount(tested);
+        node.setDescCancelledCount(cancelled);
+    }
+
+    private static int valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.mindmap.entity;
+
+/** The node columns a workload is counted for; see {@link PersonWorkload}. */
+public enum WorkloadRole {
+    TESTER,
+    BACKEND_DEVELOPER,
+    FRONTEND_DEVELOPER;
+
+    public String personOf(String tester, String backendDeveloper, String frontendDeveloper) {
+        switch (this) {
+            case TESTER:
+                return tester;
+            case BACKEND_DEVELOPER:
+                return backendDeveloper;
+            default:
+                return frontendDeveloper;
+        }
+    }
+}
@@ -2,8 +2,69 @@ package com.example.mindmap.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.StatusCounts;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface MindMapNodeMapper extends BaseMapper<MindMapNode> {
+
+    // Sets the node at rootPath and its whole subtree to status, collapsing their counters accordingly.
+    int updateSubtreeStatus(@Param("rootPath") String rootPath, @Param("status") NodeStatus status);
+
+    // Adds child/descendant counter deltas to the given nodes; status is written too when not null.
+    int adjustCounters(@Param("ids") Collection<Long> ids, @Param("child") StatusCounts child,
+                       @Param("desc") StatusCounts desc, @Param("status") NodeStatus status);
+
+    // Replaces a node's counters with recounted values; status is written too when not null.
+    int setCounters(@Param("id") Long id, @Param("child") StatusCounts child,
+                    @Param("desc") StatusCounts desc, @Param("status") NodeStatus status);
+
+    // Structural columns and assignees of one node (no rich text); null if it does not exist.
+    MindMapNode selectHierarchyById(@Param("id") Long id);
+
+    // Structural columns and assignees of the given nodes, locked FOR UPDATE when forUpdate is set.
+    List<MindMapNode> selectHierarchyByIds(@Param("ids") Collection<Long> ids, @Param("forUpdate") boolean forUpdate);
+
+    // id, status and descendant counters of every child of parentId, locked FOR UPDATE.
+    List<MindMapNode> selectChildStatusesForUpdate(@Param("parentId") Long parentId);
+
+    // Requirement, assignees and status of the subtree under pathPrefix, locked FOR UPDATE; rows in exceptStatus are skipped when it is not null.
+    List<MindMapNode> selectAssignmentsForUpdate(@Param("pathPrefix") String pathPrefix, @Param("exceptStatus") NodeStatus exceptStatus);
+
+    // Writes path and depth of one node.
+    int setHierarchy(@Param("id") Long id, @Param("path") String path, @Param("depth") int depth);
+
+    // Rows of one requirement ordered by path, read lazily; only valid inside a transaction.
+    Cursor<MindMapNode> streamByRequirementId(@Param("requirementId") String requirementId);
+
+    // Summary columns of the first perParentLimit children (by id) of each parent.
+    List<MindMapNode> selectChildrenWindow(@Param("parentIds") Collection<Long> parentIds,
+                                           @Param("perParentLimit") int perParentLimit);
+
+    // Re-roots every row whose path starts with oldPrefix under newPrefix in one statement;
+    // requirement_id is rewritten too when requirementId is not null.
+    int rewriteSubtreePath(@Param("oldPrefix") String oldPrefix, @Param("newPrefix") String newPrefix,
+                           @Param("depthDelta") int depthDelta, @Param("requirementId") String requirementId);
+
+    // Search index columns of every row, of the subtree under pathPrefix and / or of the given ids, passed to handler row by row.
+    void selectSearchFields(@Param("ids") Collection<Long> ids, @Param("pathPrefix") String pathPrefix,
+                            ResultHandler<MindMapNode> handler);
+
+    // Bulk import insert with a fixed column list; run through a batch session, fills in the generated id.
+    int insertImported(MindMapNode node);
+
+    // Writes the flagged columns of a buffered edit and moves version on by versions; run through a batch session.
+    int applyBufferedEdit(@Param("id") Long id, @Param("description") String description,
+                          @Param("descriptionSet") boolean descriptionSet, @Param("remarks") String remarks,
+                          @Param("remarksSet") boolean remarksSet, @Param("versions") int versions);
+
+    // Turns the parent path stored by insertImported into the node's own path.
+    int appendIdToPath(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,31 @@
+package com.example.mindmap.mapper;
+
+import com.example.mindmap.entity.QueuedPropagation;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface PropagationQueueMapper {
+
+    int insertAll(@Param("rows") Collection<QueuedPropagation> rows);
+
+    // Ids of a requirement's queued rows in click order, without locking them
+    List<Long> selectIds(@Param("requirementId") String requirementId);
+
+    // The given rows that still exist, in click order, locked until the run commits
+    List<QueuedPropagation> selectForUpdate(@Param("ids") Collection<Long> ids);
+
+    List<Long> selectNodeIds(@Param("requirementId") String requirementId);
+
+    // Requirements with queued rows
+    List<String> selectRequirementIds();
+
+    long countAll();
+
+    int incrementAttempts(@Param("ids") Collection<Long> ids);
+
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,15 @@
+package com.example.mindmap.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+
+@Mapper
+public interface RequirementRevisionMapper {
+
+    // Current revision, or null if the requirement has never been modified through the service
+    Long selectRevision(@Param("requirementId") String requirementId);
+
+    int bumpRevisions(@Param("requirementIds") Collection<String> requirementIds);
+}
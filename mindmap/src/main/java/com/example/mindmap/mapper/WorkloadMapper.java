@@ -0,0 +1,22 @@
+package com.example.mindmap.mapper;
+
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.WorkloadRole;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface WorkloadMapper {
+
+    // Adds each row's counts to the stored row of its requirement, role and person, creating missing rows.
+    int applyDeltas(@Param("rows") Collection<PersonWorkload> rows);
+
+    // Non-empty workloads of one requirement, all roles when role is null; ordered by role and person.
+    List<PersonWorkload> selectByRequirement(@Param("requirementId") String requirementId, @Param("role") WorkloadRole role);
+
+    // Non-empty workloads of one person across requirements, all roles when role is null.
+    List<PersonWorkload> selectByPerson(@Param("person") String person, @Param("role") WorkloadRole role);
+}
@@ -0,0 +1,67 @@
+package com.example.mindmap.metrics;
+
+import lombok.Getter;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Per-call tallies of the service operation running on the current thread: SQL statements,
+ * rows read and written, propagation extent and the requirements it touched.
+ * <p>
+ * A scope is opened by {@link ServiceMetricsAspect} around the outermost {@code MindMapService}
+ * call; {@link SqlMetricsInterceptor} and the service code add to it. Outside a scope every
+ * {@code record*} method is a no-op.
+ */
+@Getter
+public class OperationMetrics {
+
+    private static final ThreadLocal<OperationMetrics> CURRENT = new ThreadLocal<>();
+
+    private long statements;
+    private long rowsRead;
+    private long rowsWritten;
+    // Ancestor levels recomputed on the way up, and rows rewritten on the way down
+    private int ancestorLevels;
+    private long subtreeRows;
+    private boolean propagated;
+    private final Set<String> requirementIds = new LinkedHashSet<>();
+
+    static OperationMetrics open() {
+        if (CURRENT.get() != null) {
+            return null; // nested call, the outer scope keeps counting
+        }
+        OperationMetrics metrics = new OperationMetrics();
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    public static void recordStatement(long rowsRead, long rowsWritten) {
+        OperationMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.statements++;
+            metrics.rowsRead += rowsRead;
+            metrics.rowsWritten += rowsWritten;
+        }
+    }
+
+    public static void recordPropagation(int ancestorLevels, long subtreeRows) {
+        OperationMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.propagated = true;
+            metrics.ancestorLevels = Math.max(metrics.ancestorLevels, ancestorLevels);
+            metrics.subtreeRows += subtreeRows;
+        }
+    }
+
+    public static void recordRequirements(Set<String> requirementIds) {
+        OperationMetrics metrics = CURRENT.get();
+        if (metrics != null) {
+            metrics.requirementIds.addAll(requirementIds);
+        }
+    }
+}
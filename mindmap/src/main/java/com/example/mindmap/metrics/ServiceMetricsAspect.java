@@ -0,0 +1,132 @@
+package com.example.mindmap.metrics;
+
+import com.example.mindmap.config.MindMapProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every {@code MindMapService} operation and publishes, per operation, the SQL statements,
+ * rows read / written and propagation extent counted in its {@link OperationMetrics} scope:
+ * <ul>
+ *     <li>{@code mindmap.service.calls} timer (with histogram buckets), tags {@code operation}, {@code outcome}
+ *         ({@code success}, {@code rejected}, {@code conflict}, {@code error})</li>
+ *     <li>{@code mindmap.service.sql.statements} summary, tag {@code operation}</li>
+ *     <li>{@code mindmap.service.sql.rows} summary, tags {@code operation}, {@code access=read|written}</li>
+ *     <li>{@code mindmap.propagation.ancestor.levels} and {@code mindmap.propagation.subtree.rows} summaries,
+ *         tag {@code operation}, for calls that propagated a status</li>
+ * </ul>
+ * Calls over {@code mindmap.metrics.slow-operation-*} are logged at WARN with their node and requirement ids.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE) // outside the transaction, so commit time is included
+public class ServiceMetricsAspect {
+
+    private static final Logger log = LoggerFactory.getLogger(ServiceMetricsAspect.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Around("execution(* com.example.mindmap.service.MindMapService.*(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        OperationMetrics metrics = OperationMetrics.open();
+        if (metrics == null) {
+            return joinPoint.proceed();
+        }
+        String operation = joinPoint.getSignature().getName();
+        String outcome = "success";
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = e instanceof IllegalArgumentException ? "rejected"
+                    : e instanceof OptimisticLockingFailureException ? "conflict" : "error";
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            OperationMetrics.close();
+            publish(operation, outcome, elapsed, metrics);
+            logIfSlow(joinPoint, operation, elapsed, metrics);
+        }
+    }
+
+    private void publish(String operation, String outcome, long elapsedNanos, OperationMetrics metrics) {
+        Timer.builder("mindmap.service.calls")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("mindmap.service.sql.statements")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(metrics.getStatements());
+        DistributionSummary.builder("mindmap.service.sql.rows")
+                .tag("operation", operation).tag("access", "read")
+                .register(meterRegistry)
+                .record(metrics.getRowsRead());
+        DistributionSummary.builder("mindmap.service.sql.rows")
+                .tag("operation", operation).tag("access", "written")
+                .register(meterRegistry)
+                .record(metrics.getRowsWritten());
+        if (metrics.isPropagated()) {
+            DistributionSummary.builder("mindmap.propagation.ancestor.levels")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(metrics.getAncestorLevels());
+            DistributionSummary.builder("mindmap.propagation.subtree.rows")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(metrics.getSubtreeRows());
+        }
+    }
+
+    private void logIfSlow(ProceedingJoinPoint joinPoint, String operation, long elapsedNanos, OperationMetrics metrics) {
+        MindMapProperties.Metrics settings = mindMapProperties.getMetrics();
+        boolean slow = elapsedNanos > settings.getSlowOperationLatency().toNanos();
+        if (!slow && metrics.getStatements() <= settings.getSlowOperationStatements()) {
+            return;
+        }
+        // Node ids come from the arguments; requirement ids from the arguments and from what the call changed.
+        List<Object> nodeIds = new ArrayList<>();
+        Set<String> requirementIds = new LinkedHashSet<>();
+        String[] names = ((MethodSignature) joinPoint.getSignature()).getParameterNames();
+        Object[] args = joinPoint.getArgs();
+        for (int i = 0; i < args.length; i++) {
+            String name = names != null ? names[i] : "";
+            if (args[i] != null && (name.endsWith("Id") || name.endsWith("Ids")) && !name.startsWith("requirement")) {
+                nodeIds.add(args[i] instanceof Collection<?> ids && ids.size() > 10
+                        ? ids.size() + " ids" : args[i]); // keep the line short for large batches
+            } else if (args[i] instanceof String value && name.startsWith("requirement")) {
+                requirementIds.add(value);
+            }
+        }
+        requirementIds.addAll(metrics.getRequirementIds());
+        log.warn("Slow operation {}: {} ms, {} statements, {} rows read, {} rows written, nodeId={}, requirementId={}",
+                operation, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), metrics.getStatements(),
+                metrics.getRowsRead(), metrics.getRowsWritten(),
+                nodeIds.size() == 1 ? nodeIds.get(0) : nodeIds, requirementIds);
+    }
+}
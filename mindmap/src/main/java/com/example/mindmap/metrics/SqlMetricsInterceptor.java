@@ -0,0 +1,63 @@
+package com.example.mindmap.metrics;
+
+import org.apache.ibatis.executor.BatchExecutor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Counts the statements MyBatis executes, and the rows they read or write, into the current
+ * {@link OperationMetrics} scope.
+ * <p>
+ * Statements queued by a batch executor are counted when the batch is flushed, one per JDBC
+ * batch. Rows streamed through a cursor are not counted, only the statement.
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query", args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "queryCursor", args = {MappedStatement.class, Object.class, RowBounds.class}),
+        @Signature(type = Executor.class, method = "flushStatements", args = {})
+})
+public class SqlMetricsInterceptor implements Interceptor {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        switch (invocation.getMethod().getName()) {
+            case "update":
+                int updated = (Integer) result;
+                if (updated != BatchExecutor.BATCH_UPDATE_RETURN_VALUE) {
+                    OperationMetrics.recordStatement(0, Math.max(updated, 0));
+                }
+                break;
+            case "query":
+                OperationMetrics.recordStatement(result instanceof List ? ((List<?>) result).size() : 0, 0);
+                break;
+            case "queryCursor":
+                OperationMetrics.recordStatement(0, 0);
+                break;
+            default: // flushStatements
+                for (BatchResult batch : (List<BatchResult>) result) {
+                    long rows = 0;
+                    for (int count : batch.getUpdateCounts()) {
+                        // Rewritten MySQL batches may only report success per row
+                        rows += count == Statement.SUCCESS_NO_INFO ? 1 : Math.max(count, 0);
+                    }
+                    OperationMetrics.recordStatement(0, rows);
+                }
+        }
+        return result;
+    }
+}
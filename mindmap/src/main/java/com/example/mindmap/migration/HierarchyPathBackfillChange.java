@@ -0,0 +1,111 @@
+package com.example.mindmap.migration;
+
+import com.example.mindmap.util.NodePaths;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fills {@code path} and {@code depth} for rows that existed before the hierarchy index was added.
+ * <p>
+ * Only ids and parent ids are read, the paths are computed in memory with a breadth-first walk
+ * from the roots and written back with JDBC batches. This keeps the migration portable across
+ * MySQL and H2 instead of relying on vendor-specific UPDATE ... JOIN syntax.
+ */
+public class HierarchyPathBackfillChange implements CustomTaskChange {
+
+    private static final Logger log = LoggerFactory.getLogger(HierarchyPathBackfillChange.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            Map<Long, List<Long>> childrenByParent = new HashMap<>();
+            List<Long> roots = new ArrayList<>();
+            int total = 0;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id, parent_id FROM mind_map_node")) {
+                while (rs.next()) {
+                    long id = rs.getLong(1);
+                    long parentId = rs.getLong(2);
+                    if (rs.wasNull()) {
+                        roots.add(id);
+                    } else {
+                        childrenByParent.computeIfAbsent(parentId, k -> new ArrayList<>()).add(id);
+                    }
+                    total++;
+                }
+            }
+
+            int written = 0;
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE mind_map_node SET path = ?, depth = ? WHERE id = ?")) {
+                Deque<Object[]> queue = new ArrayDeque<>();
+                for (Long root : roots) {
+                    queue.add(new Object[]{root, NodePaths.childPath(null, root), 0});
+                }
+                while (!queue.isEmpty()) {
+                    Object[] entry = queue.poll();
+                    Long id = (Long) entry[0];
+                    String path = (String) entry[1];
+                    int depth = (Integer) entry[2];
+                    update.setString(1, path);
+                    update.setInt(2, depth);
+                    update.setLong(3, id);
+                    update.addBatch();
+                    if (++written % BATCH_SIZE == 0) {
+                        update.executeBatch();
+                    }
+                    for (Long child : childrenByParent.getOrDefault(id, List.of())) {
+                        queue.add(new Object[]{child, NodePaths.childPath(path, child), depth + 1});
+                    }
+                }
+                update.executeBatch();
+            }
+            if (written != total) {
+                // Rows not reachable from a root are part of a parent_id cycle; leave them for manual repair.
+                log.warn("Hierarchy backfill reached {} of {} mind_map_node rows; the rest are not connected to a root",
+                        written, total);
+            }
+        } catch (SQLException e) {
+            throw new CustomChangeException("Failed to backfill mind_map_node hierarchy paths", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "mind_map_node path and depth backfilled";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
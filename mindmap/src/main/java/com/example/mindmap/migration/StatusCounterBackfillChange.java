@@ -0,0 +1,121 @@
+package com.example.mindmap.migration;
+
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.StatusCounts;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the child and descendant status counters for existing rows.
+ * <p>
+ * Rows are processed deepest first (using the depth backfilled by changeset 3), so each
+ * node's descendant counters are complete before they are folded into its parent. Rows that
+ * changeset 3 left without a path are in a parent_id cycle and have no usable depth; they keep
+ * zero counters and are left for manual repair.
+ */
+public class StatusCounterBackfillChange implements CustomTaskChange {
+
+    private static final Logger log = LoggerFactory.getLogger(StatusCounterBackfillChange.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        Connection connection = ((JdbcConnection) database.getConnection()).getUnderlyingConnection();
+        try {
+            List<long[]> rows = new ArrayList<>(); // id, parentId (0 for roots), depth
+            Map<Long, NodeStatus> statuses = new HashMap<>();
+            int unconnected = 0;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT id, parent_id, depth, status, path FROM mind_map_node")) {
+                while (rs.next()) {
+                    if (rs.getString(5) == null) {
+                        unconnected++;
+                        continue;
+                    }
+                    long id = rs.getLong(1);
+                    rows.add(new long[]{id, rs.getLong(2), rs.getInt(3)});
+                    statuses.put(id, NodeStatus.valueOf(rs.getString(4)));
+                }
+            }
+            if (unconnected > 0) {
+                log.warn("Status counter backfill skipped {} mind_map_node rows that are not connected to a root", unconnected);
+            }
+            rows.sort(Comparator.comparingLong((long[] row) -> row[2]).reversed());
+
+            Map<Long, StatusCounts> children = new HashMap<>();
+            Map<Long, StatusCounts> descendants = new HashMap<>();
+            for (long[] row : rows) {
+                long id = row[0];
+                long parentId = row[1];
+                if (parentId == 0) {
+                    continue;
+                }
+                NodeStatus status = statuses.get(id);
+                children.computeIfAbsent(parentId, k -> new StatusCounts()).add(status, 1);
+                descendants.computeIfAbsent(parentId, k -> new StatusCounts())
+                        .add(status, 1)
+                        .add(descendants.getOrDefault(id, new StatusCounts()));
+            }
+
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE mind_map_node SET child_pending_count = ?, child_tested_count = ?, child_cancelled_count = ?,"
+                            + " desc_pending_count = ?, desc_tested_count = ?, desc_cancelled_count = ? WHERE id = ?")) {
+                int pending = 0;
+                for (Map.Entry<Long, StatusCounts> entry : children.entrySet()) {
+                    StatusCounts child = entry.getValue();
+                    StatusCounts desc = descendants.get(entry.getKey());
+                    update.setInt(1, child.getPending());
+                    update.setInt(2, child.getTested());
+                    update.setInt(3, child.getCancelled());
+                    update.setInt(4, desc.getPending());
+                    update.setInt(5, desc.getTested());
+                    update.setInt(6, desc.getCancelled());
+                    update.setLong(7, entry.getKey());
+                    update.addBatch();
+                    if (++pending % BATCH_SIZE == 0) {
+                        update.executeBatch();
+                    }
+                }
+                update.executeBatch();
+            }
+        } catch (SQLException e) {
+            throw new CustomChangeException("Failed to backfill mind_map_node status counters", e);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "mind_map_node status counters backfilled";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        return new ValidationErrors();
+    }
+}
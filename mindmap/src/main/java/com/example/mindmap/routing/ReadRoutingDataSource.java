@@ -0,0 +1,81 @@
+package com.example.mindmap.routing;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections of read-only transactions to a replica and all others to the primary. Reads
+ * outside a transaction, writes, and reads of a request inside its read-your-writes window
+ * ({@link ReadYourWrites}) use the primary. Replicas are chosen round-robin, one per request.
+ * <p>
+ * Must be used behind a {@link LazyConnectionDataSourceProxy}: the transaction manager fetches its
+ * connection before it marks the transaction read-only, and the proxy defers the choice to the
+ * first statement. Owns and closes the connection pools.
+ */
+public class ReadRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private static final String PRIMARY = "primary";
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final String[] replicaKeys;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final Counter primaryConnections;
+    private final Counter replicaConnections;
+
+    public ReadRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, MeterRegistry meterRegistry) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        pools.add(primary);
+        replicaKeys = new String[replicas.size()];
+        for (int i = 0; i < replicas.size(); i++) {
+            replicaKeys[i] = "replica-" + i;
+            targets.put(replicaKeys[i], replicas.get(i));
+            pools.add(replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        primaryConnections = connections("primary", meterRegistry);
+        replicaConnections = connections("replica", meterRegistry);
+    }
+
+    /** True if a read on the current thread would go to a replica. */
+    public boolean routesToReplica() {
+        return replicaKeys.length > 0
+                && TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && !ReadYourWrites.primaryRequired();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!routesToReplica()) {
+            primaryConnections.increment();
+            return PRIMARY;
+        }
+        replicaConnections.increment();
+        return replicaKeys[ReadYourWrites.replica(() -> Math.floorMod(nextReplica.getAndIncrement(), replicaKeys.length))];
+    }
+
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private static Counter connections(String target, MeterRegistry meterRegistry) {
+        return Counter.builder("mindmap.read-routing.connections")
+                .description("Connections handed out by the read routing data source")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.mindmap.routing;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Read routing state of the API request running on the current thread: whether its reads must go
+ * to the primary, the replica its other reads stick to, and the requirements it writes.
+ * <p>
+ * A scope is opened by {@link ReadYourWritesFilter}. Service code reports writes through
+ * {@link #written}, which pins the rest of the request to the primary and renews the client's
+ * window. Outside a scope (startup, background workers) reads are never pinned and writes are not
+ * recorded.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<ReadYourWrites> CURRENT = new ThreadLocal<>();
+
+    private boolean primary;
+    private int replica = -1;
+    private final Consumer<Set<String>> onWrite;
+
+    private ReadYourWrites(boolean primary, Consumer<Set<String>> onWrite) {
+        this.primary = primary;
+        this.onWrite = onWrite;
+    }
+
+    static void open(boolean primary, Consumer<Set<String>> onWrite) {
+        CURRENT.set(new ReadYourWrites(primary, onWrite));
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    /** True if the current request has to read from the primary. */
+    public static boolean primaryRequired() {
+        ReadYourWrites current = CURRENT.get();
+        return current != null && current.primary;
+    }
+
+    public static void written(Collection<String> requirementIds) {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            return;
+        }
+        current.primary = true;
+        Set<String> ids = requirementIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        if (!ids.isEmpty()) {
+            current.onWrite.accept(ids);
+        }
+    }
+
+    // One replica per request, so its revision lookup and tree load see the same replication state
+    static int replica(IntSupplier choose) {
+        ReadYourWrites current = CURRENT.get();
+        if (current == null) {
+            return choose.getAsInt();
+        }
+        if (current.replica < 0) {
+            current.replica = choose.getAsInt();
+        }
+        return current.replica;
+    }
+}
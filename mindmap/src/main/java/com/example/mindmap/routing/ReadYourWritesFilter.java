@@ -0,0 +1,121 @@
+package com.example.mindmap.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Per-client read-your-writes windows, carried in a cookie so that any instance can honour them.
+ * <p>
+ * A request that changes a requirement gets a cookie listing that requirement with the end of its
+ * window. Until then, the client's requests for that requirement ({@code /requirements/{id}/...})
+ * and its requests not tied to one requirement (nodes, search) read from the primary; reads of
+ * other requirements still go to a replica. Other clients are not affected.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    static final String COOKIE_NAME = "mindmap-written";
+
+    private static final Pattern REQUIREMENT_PATH = Pattern.compile("/requirements/([^/]+)");
+    // Keeps the cookie small; the oldest windows are dropped first
+    private static final int MAX_REQUIREMENTS = 32;
+
+    private final long windowMillis;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.windowMillis = window.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Map<String, Long> windows = openWindows(request, System.currentTimeMillis());
+        String requirementId = requirementOf(request);
+        boolean primary = !windows.isEmpty() && (requirementId == null || windows.containsKey(requirementId));
+        ReadYourWrites.open(primary, requirementIds -> {
+            long until = System.currentTimeMillis() + windowMillis;
+            for (String id : requirementIds) {
+                windows.remove(id); // re-inserted last, as the newest
+                windows.put(id, until);
+            }
+            Iterator<String> oldest = windows.keySet().iterator();
+            while (windows.size() > MAX_REQUIREMENTS) {
+                oldest.next();
+                oldest.remove();
+            }
+            // Writes happen before the response body, so the response is normally not committed yet.
+            // A request touching several requirements sends the cookie more than once; the last one wins.
+            if (!response.isCommitted()) {
+                response.addCookie(cookie(request, windows));
+            }
+        });
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadYourWrites.close();
+        }
+    }
+
+    // Windows still open, capped at one window from now since the cookie comes from the client
+    private Map<String, Long> openWindows(HttpServletRequest request, long now) {
+        Map<String, Long> windows = new LinkedHashMap<>();
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return windows;
+        }
+        for (Cookie cookie : cookies) {
+            if (!COOKIE_NAME.equals(cookie.getName())) {
+                continue;
+            }
+            for (String entry : cookie.getValue().split("\\|")) {
+                int separator = entry.lastIndexOf('~');
+                if (separator <= 0) {
+                    continue;
+                }
+                try {
+                    long until = Math.min(Long.parseLong(entry.substring(separator + 1)), now + windowMillis);
+                    if (until > now) {
+                        windows.put(URLDecoder.decode(entry.substring(0, separator), StandardCharsets.UTF_8), until);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // malformed entry, ignored
+                }
+            }
+        }
+        return windows;
+    }
+
+    private Cookie cookie(HttpServletRequest request, Map<String, Long> windows) {
+        // URL encoding leaves neither '~' nor '|' in the requirement ids
+        String value = windows.entrySet().stream()
+                .map(e -> URLEncoder.encode(e.getKey(), StandardCharsets.UTF_8) + "~" + e.getValue())
+                .collect(Collectors.joining("|"));
+        Cookie cookie = new Cookie(COOKIE_NAME, value);
+        cookie.setPath(request.getContextPath() + "/api");
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (windowMillis + 999) / 1000));
+        cookie.setAttribute("SameSite", "Lax");
+        return cookie;
+    }
+
+    private static String requirementOf(HttpServletRequest request) {
+        Matcher matcher = REQUIREMENT_PATH.matcher(request.getRequestURI());
+        return matcher.find() ? UriUtils.decode(matcher.group(1), StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.mindmap.search;
+
+import com.example.mindmap.config.SchemaReadyEvent;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.charfilter.HTMLStripCharFilter;
+import org.apache.lucene.analysis.standard.StandardTokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-memory Lucene index over the text of every node: description and remarks (HTML stripped),
+ * tester and developers. Searching it replaces LIKE scans over the TEXT columns.
+ * <p>
+ * The index is built from the database when the application is ready. Afterwards the service
+ * reports which nodes or subtrees a transaction changed; once it commits, a single indexer thread
+ * re-reads those rows and replaces their documents, in commit order. Rows are always re-read rather
+ * than taken from the request, so concurrent changes converge on what the database holds. Searches
+ * see changes a few milliseconds after the commit.
+ * <p>
+ * Statuses are not indexed, so status changes, the most frequent writes, never touch the index.
+ */
+@Component
+public class NodeSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeSearchIndex.class);
+
+    // Stored and indexed as single terms
+    static final String ID = "id";
+    static final String PATH = "path";
+    static final String REQUIREMENT = "requirement";
+    static final String TESTER = "tester";
+    static final String DEVELOPER = "developer"; // backend and frontend developer, multi-valued
+    // Analyzed, not stored
+    static final String DESCRIPTION = "description";
+    static final String REMARKS = "remarks";
+
+    private static final Map<String, Float> TEXT_FIELDS = Map.of(DESCRIPTION, 2f, REMARKS, 1f);
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Analyzer analyzer = new RichTextAnalyzer();
+    private IndexWriter writer;
+    private SearcherManager searchers;
+    private ExecutorService indexer;
+    private volatile boolean ready;
+
+    @PostConstruct
+    void init() throws IOException {
+        writer = new IndexWriter(new ByteBuffersDirectory(), new IndexWriterConfig(analyzer));
+        searchers = new SearcherManager(writer, null);
+        indexer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mindmap-search-indexer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("mindmap.search.documents", this, index -> index.writer.getDocStats().numDocs)
+                .description("Nodes in the full-text search index")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        indexer.shutdownNow();
+        searchers.close();
+        writer.close();
+    }
+
+    // Runs once Liquibase is done, also a deferred run; changes committed meanwhile are queued behind the build and applied after it.
+    @EventListener(SchemaReadyEvent.class)
+    public void build() {
+        indexer.execute(() -> apply("build", () -> {
+            long start = System.nanoTime();
+            writer.deleteAll();
+            List<Document> chunk = new ArrayList<>();
+            mindMapNodeMapper.selectSearchFields(null, null, context -> {
+                chunk.add(document(context.getResultObject()));
+                if (chunk.size() == 1000) {
+                    addAll(chunk);
+                }
+            });
+            addAll(chunk);
+            ready = true;
+            log.info("Search index built: {} nodes in {} ms", writer.getDocStats().numDocs, (System.nanoTime() - start) / 1_000_000);
+        }));
+    }
+
+    /** True once the initial build has finished; until then searches only see nodes changed since startup. */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Re-indexes the given nodes after the current transaction commits; ids that no longer exist are removed. */
+    public void nodesChanged(Collection<Long> ids) {
+        List<Long> copy = List.copyOf(ids);
+        afterCommit(() -> apply("nodesChanged", () -> {
+            Set<Long> missing = new HashSet<>(copy);
+            mindMapNodeMapper.selectSearchFields(copy, null, context -> {
+                MindMapNode node = context.getResultObject();
+                missing.remove(node.getId());
+                update(node);
+            });
+            for (Long id : missing) {
+                writer.deleteDocuments(new Term(ID, id.toString()));
+            }
+        }));
+    }
+
+    /** Re-indexes a node and its whole subtree after commit, e.g. after it moved or was imported. */
+    public void subtreeChanged(Long rootId) {
+        afterCommit(() -> apply("subtreeChanged", () -> {
+            MindMapNode root = mindMapNodeMapper.selectHierarchyById(rootId);
+            if (root == null) {
+                deleteSubtree(rootId);
+                return;
+            }
+            // Documents of rows that left the subtree meanwhile are replaced by their own pending operation
+            mindMapNodeMapper.selectSearchFields(null, root.getPath(), context -> update(context.getResultObject()));
+        }));
+    }
+
+    /** Removes a node and its whole subtree after commit. */
+    public void subtreeRemoved(Long rootId) {
+        afterCommit(() -> apply("subtreeRemoved", () -> deleteSubtree(rootId)));
+    }
+
+    /**
+     * Ids of the best matching nodes, best first. {@code text} uses simple query syntax over description and
+     * remarks (all words must match; {@code "phrase"}, {@code prefix*}, {@code a | b}, {@code -not}); the other
+     * arguments are exact, case-insensitive filters. Any argument may be null, but not all of them.
+     */
+    public Hits search(String text, String requirementId, String tester, String developer, int limit) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        if (StringUtils.hasText(text)) {
+            SimpleQueryParser parser = new SimpleQueryParser(analyzer, TEXT_FIELDS);
+            parser.setDefaultOperator(BooleanClause.Occur.MUST);
+            query.add(parser.parse(text), BooleanClause.Occur.MUST);
+        }
+        if (requirementId != null) {
+            query.add(new TermQuery(new Term(REQUIREMENT, requirementId)), BooleanClause.Occur.FILTER);
+        }
+        if (StringUtils.hasText(tester)) {
+            query.add(new TermQuery(new Term(TESTER, keyword(tester))), BooleanClause.Occur.FILTER);
+        }
+        if (StringUtils.hasText(developer)) {
+            query.add(new TermQuery(new Term(DEVELOPER, keyword(developer))), BooleanClause.Occur.FILTER);
+        }
+        Query built = query.build();
+        try {
+            IndexSearcher searcher = searchers.acquire();
+            try {
+                TopDocs top = searcher.search(built, limit);
+                StoredFields stored = searcher.storedFields();
+                Hits hits = new Hits(searcher.count(built));
+                for (ScoreDoc scoreDoc : top.scoreDocs) {
+                    hits.ids.add(Long.valueOf(stored.document(scoreDoc.doc).get(ID)));
+                    hits.scores.add(scoreDoc.score);
+                }
+                return hits;
+            } finally {
+                searchers.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void afterCommit(Runnable operation) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    indexer.execute(operation);
+                }
+            });
+        } else {
+            indexer.execute(operation);
+        }
+    }
+
+    // Runs one index operation on the indexer thread and makes it visible to searches.
+    private void apply(String operation, IndexOperation body) {
+        try {
+            body.run();
+            searchers.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            // The index lags behind until the affected nodes change again or the application restarts
+            log.error("Search index operation {} failed", operation, e);
+        }
+    }
+
+    private void deleteSubtree(Long rootId) throws IOException {
+        IndexSearcher searcher = searchers.acquire();
+        try {
+            TopDocs top = searcher.search(new TermQuery(new Term(ID, rootId.toString())), 1);
+            if (top.scoreDocs.length > 0) {
+                String path = searcher.storedFields().document(top.scoreDocs[0].doc).get(PATH);
+                writer.deleteDocuments(new PrefixQuery(new Term(PATH, path)));
+            }
+        } finally {
+            searchers.release(searcher);
+        }
+        // Also covers a root added and removed before the searcher saw it
+        writer.deleteDocuments(new Term(ID, rootId.toString()));
+    }
+
+    private void update(MindMapNode node) {
+        try {
+            writer.updateDocument(new Term(ID, node.getId().toString()), document(node));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addAll(List<Document> chunk) {
+        try {
+            writer.addDocuments(chunk);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        chunk.clear();
+    }
+
+    private static Document document(MindMapNode node) {
+        Document document = new Document();
+        document.add(new StringField(ID, node.getId().toString(), Field.Store.YES));
+        document.add(new StringField(PATH, node.getPath(), Field.Store.YES));
+        if (node.getRequirementId() != null) {
+            document.add(new StringField(REQUIREMENT, node.getRequirementId(), Field.Store.NO));
+        }
+        if (StringUtils.hasText(node.getTester())) {
+            document.add(new StringField(TESTER, keyword(node.getTester()), Field.Store.NO));
+        }
+        for (String developer : new String[]{node.getBackendDeveloper(), node.getFrontendDeveloper()}) {
+            if (StringUtils.hasText(developer)) {
+                document.add(new StringField(DEVELOPER, keyword(developer), Field.Store.NO));
+            }
+        }
+        if (node.getDescription() != null) {
+            document.add(new TextField(DESCRIPTION, node.getDescription(), Field.Store.NO));
+        }
+        if (node.getRemarks() != null) {
+            document.add(new TextField(REMARKS, node.getRemarks(), Field.Store.NO));
+        }
+        return document;
+    }
+
+    private static String keyword(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Matching node ids with their scores, best first, and the number of all matches. */
+    public static class Hits {
+        public final int total;
+        public final List<Long> ids = new ArrayList<>();
+        public final List<Float> scores = new ArrayList<>();
+
+        Hits(int total) {
+            this.total = total;
+        }
+    }
+
+    private interface IndexOperation {
+        void run() throws IOException;
+    }
+
+    // Rich text is HTML: markup is stripped before tokenizing, so tags and attributes are not searchable.
+    private static class RichTextAnalyzer extends Analyzer {
+        @Override
+        protected Reader initReader(String fieldName, Reader reader) {
+            return new HTMLStripCharFilter(reader);
+        }
+
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new StandardTokenizer();
+            return new TokenStreamComponents(tokenizer, new LowerCaseFilter(tokenizer));
+        }
+
+        // Applied to prefix terms such as "login*"
+        @Override
+        protected TokenStream normalize(String fieldName, TokenStream in) {
+            return new LowerCaseFilter(in);
+        }
+    }
+}
@@ -1,26 +1,70 @@
 package com.example.mindmap.service;
 
 import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.WorkloadRole;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import com.example.mindmap.dto.BatchStatusUpdateResultDto;
 import com.example.mindmap.dto.MindMapNodeDto; // Ensure this import is here
+import com.example.mindmap.dto.NodeImportReportDto;
+import com.example.mindmap.dto.NodePageDto;
+import com.example.mindmap.dto.NodeSearchResultDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import com.example.mindmap.tree.MindMapTree;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface MindMapService {
     MindMapNode addNode(MindMapNode node);
     MindMapNode getNodeById(Long nodeId);
     // List<MindMapNode> getMindMapByRequirementId(String requirementId); // Old signature - this is correctly commented
     List<MindMapNodeDto> getMindMapByRequirementId(String requirementId); // New signature - this is correct
+    // The same tree in compact form, serialized to the same JSON without creating DTOs; never null
+    MindMapTree getMindMapTree(String requirementId);
+    // Writes the same nested JSON as getMindMapByRequirementId straight to out, row by row
+    void exportMindMap(String requirementId, OutputStream out) throws IOException;
+    // Paged lazy loading: one page of siblings (ordered by id, after the cursor) expanded depth levels down.
+    // getChildren returns null if the node does not exist.
+    NodePageDto getChildren(Long nodeId, int depth, int limit, Long after);
+    NodePageDto getRootNodes(String requirementId, int depth, int limit, Long after);
+    // Revision of a requirement's tree, changed by every mutation (buffered edits included); the base of the tree endpoint's ETag
+    String getRequirementRevision(String requirementId);
+
+    // Bulk import of whole trees below parentId (or as new roots when null); ids are assigned by the database
+    NodeImportReportDto importNodes(Long parentId, List<MindMapNodeDto> roots);
+    // Same, from flat NDJSON records linked by client-side id / parentId
+    NodeImportReportDto importNodesNdjson(Long parentId, InputStream ndjson) throws IOException;
 
     // ... existing methods ...
-    void deleteNodeAndChildren(Long nodeId);
+    int deleteNodeAndChildren(Long nodeId); // Returns the number of rows removed
     void deleteNodeKeepChildren(Long nodeId);
+    // Re-parents the node with its whole subtree (to a root when newParentId is null); returns null if the node
+    // does not exist. Below a parent the subtree takes the parent's requirement; requirementId re-homes a new root.
+    MindMapNode moveNode(Long nodeId, Long newParentId, String requirementId);
 
     // ... existing methods ...
-    MindMapNode updateNodeDescription(Long nodeId, String description);
-    MindMapNode updateNodeRemarks(Long nodeId, String remarks);
+    // expectedVersion is optional; a stale version (or a concurrent edit) throws OptimisticLockingFailureException
+    MindMapNode updateNodeDescription(Long nodeId, String description, Integer expectedVersion);
+    MindMapNode updateNodeRemarks(Long nodeId, String remarks, Integer expectedVersion);
 
     // ... existing methods ...
-    MindMapNode setNodeStatus(Long nodeId, com.example.mindmap.entity.NodeStatus status);
-    List<MindMapNode> batchSetNodeStatus(List<Long> nodeIds, com.example.mindmap.entity.NodeStatus status);
+    // With mindmap.propagation.async the node's own status is saved at once and propagation is queued
+    MindMapNode setNodeStatus(Long nodeId, com.example.mindmap.entity.NodeStatus status, Integer expectedVersion);
+    // Version conflicts are reported per node; the rest of the batch is still applied
+    BatchStatusUpdateResultDto batchSetNodeStatus(List<Long> nodeIds, com.example.mindmap.entity.NodeStatus status, Map<Long, Integer> expectedVersions);
+    // Queued (not yet propagated) status changes of a requirement
+    PropagationStateDto getPropagationState(String requirementId);
+    // Server-sent stream of the requirement's committed node changes, replayed from after lastEventId when given
+    SseEmitter subscribeToChanges(String requirementId, String lastEventId);
+    // Full-text search over description / remarks, optionally filtered by requirement, tester and developer
+    NodeSearchResultDto searchNodes(String text, String requirementId, String tester, String developer, int limit);
+    // Nodes per status of every person of a requirement, in one role or all (role null); read from the workload summary
+    List<PersonWorkload> getRequirementWorkload(String requirementId, WorkloadRole role);
+    // The same per requirement for one person
+    List<PersonWorkload> getPersonWorkload(String person, WorkloadRole role);
 
     // No redundant line here, the new signature is already correctly placed above.
 }
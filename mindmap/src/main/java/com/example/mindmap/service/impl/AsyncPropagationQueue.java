@@ -0,0 +1,431 @@
+package com.example.mindmap.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.config.SchemaReadyEvent;
+import com.example.mindmap.dto.NodeChangeEventDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.QueuedPropagation;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.mapper.PropagationQueueMapper;
+import com.example.mindmap.mapper.RequirementRevisionMapper;
+import com.example.mindmap.metrics.OperationMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Background status propagation for {@code mindmap.propagation.async=true}.
+ * <p>
+ * The request transaction only writes the clicked nodes' own status, and queues the nodes in the
+ * {@code propagation_queue} table in the same transaction, so a crash or redeploy cannot lose a
+ * committed click. Each row carries the requirement's revision as of the click's commit: every
+ * mutation bumps that row and holds its lock until it commits, so the revisions order the clicks
+ * of all instances by commit, as the row locks order them in synchronous mode.
+ * <p>
+ * After the commit, the instance drains the requirement: everything queued for it by any instance
+ * is locked, coalesced into one propagation and deleted in one transaction. Repeated clicks on a
+ * node keep the last status, and a click inside the subtree of a later click is dropped because
+ * the later one overwrites it. The run then sets the remaining subtrees in click order and
+ * recounts their ancestors bottom-up, which yields the same statuses as running each click
+ * synchronously in the same order. Concurrent runs for the same requirement, e.g. on two
+ * instances, wait for each other's row locks.
+ * <p>
+ * A failed run leaves its rows queued and is retried up to {@code max-attempts} times. Rows still
+ * queued after that, or left by an instance that stopped, are picked up by a sweep every
+ * {@code recovery-interval} and once the schema is ready at startup.
+ * <p>
+ * Workers come from a bounded pool; when its queue is full the committing thread propagates
+ * itself, so load turns into back-pressure instead of unbounded memory.
+ */
+@Component
+public class AsyncPropagationQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncPropagationQueue.class);
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    @Autowired
+    private PropagationQueueMapper propagationQueueMapper;
+
+    @Autowired
+    private RequirementRevisionMapper requirementRevisionMapper;
+
+    @Autowired
+    private StatusPropagationEngine statusPropagationEngine;
+
+    @Autowired
+    private WorkloadCounters workloadCounters;
+
+    @Autowired
+    private RequirementChanges requirementChanges;
+
+    @Autowired
+    private NodeChangeFeed nodeChangeFeed;
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Run state of this instance per requirement; idle entries are dropped by the sweep
+    private final Map<String, Drainer> drainers = new ConcurrentHashMap<>();
+    private ThreadPoolExecutor executor;
+    private ScheduledExecutorService sweeper;
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        MindMapProperties.Propagation settings = mindMapProperties.getPropagation();
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(settings.getWorkers(), settings.getWorkers(), 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+                runnable -> new Thread(runnable, "mindmap-propagation-" + threads.incrementAndGet()),
+                (runnable, pool) -> {
+                    // Once shut down the rows stay queued for the next start or another instance
+                    if (!pool.isShutdown()) {
+                        runnable.run();
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "mindmap-propagation-sweep"));
+        // Runs from afterCommit of the request transaction, so it must not join it
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Gauge.builder("mindmap.propagation.queue.pending", this, AsyncPropagationQueue::countQueued)
+                .description("Queued status changes of all instances not propagated yet")
+                .register(meterRegistry);
+    }
+
+    @EventListener(SchemaReadyEvent.class)
+    public void startSweeping() {
+        long interval = mindMapProperties.getPropagation().getRecoveryInterval().toMillis();
+        sweeper.scheduleWithFixedDelay(this::sweep, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        sweeper.shutdownNow();
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Status propagation still running at shutdown; its rows stay queued");
+        }
+        double left = countQueued();
+        if (left > 0) {
+            log.info("{} status changes left in propagation_queue for the next start or another instance", (long) left);
+        }
+    }
+
+    public boolean isEnabled() {
+        return mindMapProperties.getPropagation().isAsync();
+    }
+
+    /**
+     * Queues propagation for nodes whose own status row the current transaction has just set; the
+     * rows are written when it commits and drained after. {@code nodes} must carry their id,
+     * requirementId and path. A null {@code status} only recounts the nodes' ancestors, without
+     * pushing anything down their subtrees.
+     */
+    public void enqueue(Collection<MindMapNode> nodes, NodeStatus status) {
+        if (nodes.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            PendingTargets pending = new PendingTargets();
+            pending.add(nodes, status);
+            transactionTemplate.executeWithoutResult(tx -> pending.beforeCommit(false));
+            pending.afterCommit();
+            return;
+        }
+        // Looked up among the current transaction's synchronizations, so a REQUIRES_NEW transaction gets its own list
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingTargets pending) {
+                pending.add(nodes, status);
+                return;
+            }
+        }
+        PendingTargets pending = new PendingTargets();
+        pending.add(nodes, status);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    public PropagationStateDto getState(String requirementId) {
+        String key = RequirementChanges.key(requirementId);
+        PropagationStateDto state = new PropagationStateDto();
+        state.setRequirementId(requirementId);
+        state.setAsync(isEnabled());
+        state.setPendingNodeIds(new ArrayList<>(new LinkedHashSet<>(propagationQueueMapper.selectNodeIds(key))));
+        Drainer drainer = drainers.get(key);
+        if (drainer != null) {
+            synchronized (drainer) {
+                state.setRunning(drainer.running);
+                state.setCompletedRuns(drainer.completedRuns);
+                state.setLastCompletedAt(drainer.lastCompletedAt);
+            }
+        }
+        return state;
+    }
+
+    private double countQueued() {
+        try {
+            return propagationQueueMapper.countAll();
+        } catch (RuntimeException e) {
+            return Double.NaN;
+        }
+    }
+
+    // Makes sure a drain of the requirement runs after this call, on this instance.
+    private void offer(String key) {
+        boolean[] submit = new boolean[1];
+        Drainer drainer = drainers.compute(key, (k, existing) -> {
+            Drainer current = existing != null ? existing : new Drainer();
+            synchronized (current) {
+                current.signalled = true;
+                submit[0] = !current.scheduled;
+                current.scheduled = true;
+            }
+            return current;
+        });
+        if (submit[0]) {
+            executor.execute(() -> drain(key, drainer));
+        }
+    }
+
+    // Runs one coalesced propagation for the requirement, then hands the thread back to the pool.
+    private void drain(String key, Drainer drainer) {
+        synchronized (drainer) {
+            // Cleared before reading the queue: a click committed after this point signals again
+            drainer.signalled = false;
+            drainer.running = true;
+        }
+        List<Long> ids = new ArrayList<>();
+        boolean again;
+        try {
+            int propagated = transactionTemplate.execute(tx -> {
+                ids.addAll(propagationQueueMapper.selectIds(key));
+                if (ids.isEmpty()) {
+                    return 0;
+                }
+                List<QueuedPropagation> rows = propagationQueueMapper.selectForUpdate(ids);
+                if (!rows.isEmpty()) {
+                    propagate(key, rows);
+                    propagationQueueMapper.deleteByIds(rows.stream().map(QueuedPropagation::getId).collect(Collectors.toList()));
+                }
+                return rows.size();
+            });
+            again = propagated > 0;
+        } catch (RuntimeException e) {
+            again = failed(key, ids, e);
+        }
+        boolean more;
+        synchronized (drainer) {
+            drainer.running = false;
+            drainer.completedRuns++;
+            drainer.lastCompletedAt = Instant.now();
+            more = again || drainer.signalled;
+            drainer.scheduled = more;
+        }
+        if (more) {
+            // Resubmitted rather than looped, so a busy requirement cannot starve the others
+            executor.execute(() -> drain(key, drainer));
+        }
+    }
+
+    private void propagate(String key, List<QueuedPropagation> rows) {
+        // Latest click per node, in order of the latest click
+        LinkedHashMap<Long, Target> latest = new LinkedHashMap<>();
+        for (QueuedPropagation row : rows) {
+            latest.remove(row.getNodeId());
+            latest.put(row.getNodeId(), new Target(row));
+        }
+        List<Target> batch = new ArrayList<>(latest.values());
+
+        // Paths are re-read: a node may have moved since it was queued. Deleted nodes keep the
+        // queued path so their former ancestors are still recounted.
+        QueryWrapper<MindMapNode> targetQuery = new QueryWrapper<>();
+        targetQuery.select("id", "path").in("id", latest.keySet());
+        Map<Long, String> currentPaths = mindMapNodeMapper.selectList(targetQuery).stream()
+                .collect(Collectors.toMap(MindMapNode::getId, MindMapNode::getPath));
+
+        // Coalesce from the newest click backwards: a node inside a later click's subtree is overwritten anyway.
+        List<Target> effective = new ArrayList<>();
+        List<String> laterPaths = new ArrayList<>();
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            Target target = batch.get(i);
+            String path = currentPaths.getOrDefault(target.nodeId, target.path);
+            if (path == null || laterPaths.stream().anyMatch(path::startsWith)) {
+                continue;
+            }
+            if (target.status != null) {
+                laterPaths.add(path);
+            }
+            effective.add(new Target(target, path));
+        }
+        Collections.reverse(effective);
+
+        for (Target target : effective) {
+            if (target.status != null && currentPaths.containsKey(target.nodeId)) {
+                workloadCounters.subtreeStatusChanging(target.path, target.status);
+                int rowsSet = mindMapNodeMapper.updateSubtreeStatus(target.path, target.status);
+                OperationMetrics.recordPropagation(0, rowsSet);
+                NodeChangeEventDto cascaded = NodeChangeEventDto.of(NodeChangeEventDto.Type.STATUS_CHANGED, target.requirementId, target.nodeId);
+                cascaded.setStatus(target.status);
+                cascaded.setSubtree(true);
+                nodeChangeFeed.record(cascaded);
+            }
+        }
+        Map<Long, MindMapNode> changed = statusPropagationEngine.recountAncestors(
+                effective.stream().map(t -> t.path).collect(Collectors.toList()));
+        nodeChangeFeed.recordDerivedStatuses(changed.values());
+
+        Set<String> touchedRequirements = new HashSet<>();
+        touchedRequirements.add(RequirementChanges.requirementId(key));
+        changed.values().forEach(node -> touchedRequirements.add(node.getRequirementId()));
+        requirementChanges.changed(touchedRequirements);
+    }
+
+    // The run rolled back, so its rows are still queued. Returns whether to run again right away.
+    private boolean failed(String key, List<Long> ids, RuntimeException e) {
+        if (ids.isEmpty()) {
+            log.warn("Reading the propagation queue of requirement {} failed", key, e);
+            return false;
+        }
+        int maxAttempts = mindMapProperties.getPropagation().getMaxAttempts();
+        int attempts;
+        try {
+            attempts = transactionTemplate.execute(tx -> {
+                propagationQueueMapper.incrementAttempts(ids);
+                return propagationQueueMapper.selectForUpdate(ids).stream().mapToInt(QueuedPropagation::getAttempts).max().orElse(0);
+            });
+        } catch (RuntimeException counting) {
+            log.error("Status propagation for requirement {} failed; its {} queued nodes are left to the recovery sweep", key, ids.size(), e);
+            return false;
+        }
+        if (attempts < maxAttempts) {
+            log.warn("Status propagation for requirement {} failed, retrying {} nodes", key, ids.size(), e);
+            return true;
+        }
+        log.error("Status propagation for requirement {} failed {} times; its {} queued nodes are left to the recovery sweep",
+                key, attempts, ids.size(), e);
+        return false;
+    }
+
+    // Drains every requirement with queued rows and forgets requirements idle since the last sweep.
+    private void sweep() {
+        try {
+            propagationQueueMapper.selectRequirementIds().forEach(this::offer);
+        } catch (RuntimeException e) {
+            log.warn("Sweeping the propagation queue failed", e);
+        }
+        Instant cutoff = Instant.now().minus(mindMapProperties.getPropagation().getRecoveryInterval());
+        for (String key : drainers.keySet()) {
+            drainers.computeIfPresent(key, (k, drainer) -> {
+                synchronized (drainer) {
+                    boolean idle = !drainer.scheduled && (drainer.lastCompletedAt == null || drainer.lastCompletedAt.isBefore(cutoff));
+                    return idle ? null : drainer;
+                }
+            });
+        }
+    }
+
+    // Targets enqueued by one transaction, registered as its synchronization.
+    private class PendingTargets implements TransactionSynchronization {
+        final List<QueuedPropagation> rows = new ArrayList<>();
+
+        void add(Collection<MindMapNode> nodes, NodeStatus status) {
+            for (MindMapNode node : nodes) {
+                QueuedPropagation row = new QueuedPropagation();
+                row.setRequirementId(RequirementChanges.key(node.getRequirementId()));
+                row.setNodeId(node.getId());
+                row.setPath(node.getPath());
+                row.setStatus(status);
+                rows.add(row);
+            }
+        }
+
+        // Written last, so the revisions read are the ones this transaction bumped and holds locked.
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            Map<String, Long> revisions = new LinkedHashMap<>();
+            for (QueuedPropagation row : rows) {
+                row.setRevision(revisions.computeIfAbsent(row.getRequirementId(), key -> {
+                    Long revision = RequirementChanges.NO_REQUIREMENT.equals(key) ? null : requirementRevisionMapper.selectRevision(key);
+                    return revision != null ? revision : 0L;
+                }));
+            }
+            propagationQueueMapper.insertAll(rows);
+        }
+
+        @Override
+        public void afterCommit() {
+            rows.stream().map(QueuedPropagation::getRequirementId).distinct().forEach(AsyncPropagationQueue.this::offer);
+        }
+    }
+
+    private static class Drainer {
+        boolean scheduled;
+        boolean running;
+        // Set by every offer; a run still in progress then runs once more
+        boolean signalled;
+        long completedRuns;
+        Instant lastCompletedAt;
+    }
+
+    private static class Target {
+        final Long nodeId;
+        final String requirementId;
+        final String path;
+        final NodeStatus status;
+
+        Target(QueuedPropagation row) {
+            this.nodeId = row.getNodeId();
+            this.requirementId = RequirementChanges.requirementId(row.getRequirementId());
+            this.path = row.getPath();
+            this.status = row.getStatus();
+        }
+
+        Target(Target target, String path) {
+            this.nodeId = target.nodeId;
+            this.requirementId = target.requirementId;
+            this.path = path;
+            this.status = target.status;
+        }
+    }
+}
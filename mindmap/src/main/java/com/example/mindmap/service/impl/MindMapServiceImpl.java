@@ -1,30 +1,122 @@
 package com.example.mindmap.service.impl;
 
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.example.mindmap.cache.RequirementTreeCache;
+import com.example.mindmap.config.MindMapProperties;
 import com.example.mindmap.entity.MindMapNode;
 import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.mapper.RequirementRevisionMapper;
+import com.example.mindmap.mapper.WorkloadMapper;
+import com.example.mindmap.search.NodeSearchIndex;
 import com.example.mindmap.service.MindMapService;
+import com.example.mindmap.tree.MindMapTree;
+import com.example.mindmap.tree.TreeAssembler;
+import com.example.mindmap.util.NodePaths;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.SqlSessionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
-
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.ArrayList;
-import java.util.Set;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Comparator;
+import java.util.TreeMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.LinkedHashSet;
 import java.util.Map; // Added import
 import java.util.stream.Collectors; // Added import
 
 import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.StatusCounts;
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.WorkloadRole;
+import com.example.mindmap.dto.BatchStatusUpdateResultDto;
 import com.example.mindmap.dto.MindMapNodeDto; // Added import
+import com.example.mindmap.dto.NodeChangeEventDto;
+import com.example.mindmap.dto.NodeImportReportDto;
+import com.example.mindmap.dto.NodePageDto;
+import com.example.mindmap.dto.NodeSearchResultDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import com.example.mindmap.dto.NodeSummaryDto;
 
 @Service
 public class MindMapServiceImpl implements MindMapService {
 
+    // Columns read for lazy tree pages; the rich-text remarks and reference are left out
+    private static final String[] SUMMARY_COLUMNS = {
+            "id", "parent_id", "description", "requirement_id", "backend_developer", "frontend_developer", "tester", "status",
+            "child_pending_count", "child_tested_count", "child_cancelled_count",
+            "desc_pending_count", "desc_tested_count", "desc_cancelled_count"
+    };
+
     @Autowired
     private MindMapNodeMapper mindMapNodeMapper;
 
+    @Autowired
+    private StatusPropagationEngine statusPropagationEngine;
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private RequirementTreeCache requirementTreeCache;
+
+    @Autowired
+    private RequirementChanges requirementChanges;
+
+    @Autowired
+    private RequirementRevisionMapper requirementRevisionMapper;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private NodeImporter nodeImporter;
+
+    @Autowired
+    private AsyncPropagationQueue asyncPropagationQueue;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private NodeChangeFeed nodeChangeFeed;
+
+    @Autowired
+    private NodeSearchIndex nodeSearchIndex;
+
+    @Autowired
+    private NodeEditBuffer nodeEditBuffer;
+
+    @Autowired
+    private TreeAssembler treeAssembler;
+
+    @Autowired
+    private WorkloadCounters workloadCounters;
+
+    @Autowired
+    private WorkloadMapper workloadMapper;
+
     @Override
     @Transactional
     public MindMapNode addNode(MindMapNode node) {
@@ -38,181 +130,706 @@ public class MindMapServiceImpl implements MindMapService {
         if (node.getStatus() == null) {
             node.setStatus(com.example.mindmap.entity.NodeStatus.PENDING_TEST);
         }
+        MindMapNode parent = null;
+        if (node.getParentId() != null) {
+            parent = mindMapNodeMapper.selectHierarchyById(node.getParentId());
+            if (parent == null) {
+                throw new IllegalArgumentException("Parent node does not exist: " + node.getParentId());
+            }
+        }
+        // The hierarchy index, the counters and the version are owned by the service; whatever the client sent is ignored.
+        node.setPath(null);
+        node.setDepth(null);
+        node.setVersion(0);
+        new StatusCounts().writeChildrenTo(node);
+        new StatusCounts().writeDescendantsTo(node);
         mindMapNodeMapper.insert(node);
+
+        // The path ends with the generated id, so it can only be written after the insert.
+        node.setPath(NodePaths.childPath(parent != null ? parent.getPath() : null, node.getId()));
+        node.setDepth(parent != null ? parent.getDepth() + 1 : 0);
+        mindMapNodeMapper.setHierarchy(node.getId(), node.getPath(), node.getDepth());
+        statusPropagationEngine.nodeAdded(node);
+
+        NodeChangeEventDto added = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_ADDED, node.getRequirementId(), node.getId());
+        added.setParentId(node.getParentId());
+        added.setStatus(node.getStatus());
+        added.setVersion(node.getVersion());
+        nodeChangeFeed.record(added);
+        nodeSearchIndex.nodesChanged(List.of(node.getId()));
+        requirementChanged(node.getRequirementId());
         return node;
     }
 
     @Override
+    @Transactional(readOnly = true)
     public MindMapNode getNodeById(Long nodeId) {
         if (nodeId == null) {
             return null;
         }
-        return mindMapNodeMapper.selectById(nodeId);
+        // Buffered description / remarks edits (write-behind mode) are applied to the stored row.
+        return nodeEditBuffer.read(() -> nodeEditBuffer.overlay(mindMapNodeMapper.selectById(nodeId)));
     }
 
     @Override
+    @Transactional(readOnly = true)
     public List<MindMapNodeDto> getMindMapByRequirementId(String requirementId) {
+        return getMindMapTree(requirementId).toDtos();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MindMapTree getMindMapTree(String requirementId) {
         if (!StringUtils.hasText(requirementId)) {
-            return List.of();
+            return MindMapTree.EMPTY;
         }
+        return requirementTreeCache.get(requirementId, id -> nodeEditBuffer.read(() -> loadMindMap(id)));
+    }
 
-        QueryWrapper<MindMapNode> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("requirement_id", requirementId);
-        // Optional: Add order by parent_id and then by some other criteria if needed for consistent processing
-        // queryWrapper.orderByAsc("parent_id", "id"); 
-        List<MindMapNode> flatList = mindMapNodeMapper.selectList(queryWrapper);
+    @Override
+    @Transactional(readOnly = true) // keeps the connection open for the cursor
+    public void exportMindMap(String requirementId, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            if (StringUtils.hasText(requirementId)) {
+                boolean dropOrphans = treeAssembler.dropsOrphans();
+                TreeAssembler.RowTally tally = new TreeAssembler.RowTally();
+                List<MindMapNode> heldBack;
+                try (Cursor<MindMapNode> cursor = mindMapNodeMapper.streamByRequirementId(requirementId)) {
+                    heldBack = writeRows(generator, cursor, dropOrphans, tally);
+                }
+                // Every orphan was found in the first pass; later passes only place the held back subtrees.
+                while (!heldBack.isEmpty()) {
+                    heldBack = writeRows(generator, heldBack, dropOrphans, null);
+                }
+                treeAssembler.report(requirementId, tally);
+            }
+            generator.writeEndArray();
+        }
+    }
 
-        if (flatList.isEmpty()) {
-            return List.of();
+    // Writes rows arriving in path order as nested nodes. Only the chain of currently open ancestors is
+    // kept, so memory grows with depth, not size. Orphans (parent outside the requirement) are handled
+    // like the tree endpoint does (mindmap.tree.orphans): dropped with their subtrees, or written as
+    // roots. An orphan met inside another root cannot be written at the top level yet; it is returned
+    // with its subtree, to be written once the array is back at the top level.
+    private List<MindMapNode> writeRows(JsonGenerator generator, Iterable<MindMapNode> rows, boolean dropOrphans,
+                                        TreeAssembler.RowTally tally) throws IOException {
+        Deque<MindMapNode> open = new ArrayDeque<>();
+        Set<Long> skipped = new HashSet<>();
+        Set<Long> heldBackIds = new HashSet<>();
+        List<MindMapNode> heldBack = new ArrayList<>();
+        for (MindMapNode node : rows) {
+            if (tally != null) {
+                tally.row();
+            }
+            if (node.getPath() == null) {
+                skipped.add(node.getId()); // not attached to the hierarchy index, cannot be placed
+                continue;
+            }
+            // Rows arrive in pre-order, so close every open node this row is not inside of.
+            while (!open.isEmpty() && !node.getPath().startsWith(open.peek().getPath())) {
+                closeNode(generator);
+                open.pop();
+            }
+            boolean attached = node.getParentId() == null
+                    ? open.isEmpty()
+                    : !open.isEmpty() && node.getParentId().equals(open.peek().getId());
+            if (!attached) {
+                if (skipped.contains(node.getParentId())) {
+                    skipped.add(node.getId());
+                    if (tally != null) {
+                        tally.unreachable();
+                    }
+                    continue;
+                }
+                if (!heldBackIds.contains(node.getParentId())) {
+                    if (tally != null) {
+                        tally.orphan(node.getId());
+                    }
+                    if (dropOrphans) {
+                        skipped.add(node.getId());
+                        continue;
+                    }
+                }
+                if (!open.isEmpty()) {
+                    heldBackIds.add(node.getId());
+                    heldBack.add(node);
+                    continue;
+                }
+            }
+            openNode(generator, nodeEditBuffer.overlay(node));
+            open.push(node);
         }
+        while (!open.isEmpty()) {
+            closeNode(generator);
+            open.pop();
+        }
+        return heldBack;
+    }
 
-        Map<Long, MindMapNodeDto> map = flatList.stream().map(node ->
-            new MindMapNodeDto(
-                node.getId(),
-                node.getParentId(),
-                node.getDescription(),
-                node.getRemarks(),
-                node.getRequirementId(),
-                node.getBackendDeveloper(),
-                node.getFrontendDeveloper(),
-                node.getTester(),
-                node.getRequirementReference(),
-                node.getStatus()
-            )
-        ).collect(Collectors.toMap(MindMapNodeDto::getId, dto -> dto));
-
-        List<MindMapNodeDto> tree = new ArrayList<>();
-        for (MindMapNodeDto dto : map.values()) {
-            if (dto.getParentId() == null) {
-                tree.add(dto); // This is a root node for this requirement
-            } else {
-                MindMapNodeDto parentDto = map.get(dto.getParentId());
-                if (parentDto != null) {
-                    parentDto.getChildren().add(dto);
-                } else {
-                    // This case means a node has a parentId that doesn't exist in the fetched list
-                    // for this requirementId. This could indicate data integrity issues or
-                    // a node whose parent belongs to a different requirement (which shouldn't happen with current sample data).
-                    // For now, we can add it to the root level, or log a warning.
-                    // Adding to root level might be misleading. Let's assume valid parentage for now.
-                    // If data is clean, this 'else' block might not be strictly necessary.
-                    // A robust solution might log this or handle it based on specific requirements.
+    // Writes a node in MindMapNodeDto field order and leaves its "children" array open.
+    private void openNode(JsonGenerator generator, MindMapNode node) throws IOException {
+        generator.writeStartObject();
+        generator.writeObjectField("id", node.getId());
+        generator.writeObjectField("parentId", node.getParentId());
+        generator.writeStringField("description", node.getDescription());
+        generator.writeStringField("remarks", node.getRemarks());
+        generator.writeStringField("requirementId", node.getRequirementId());
+        generator.writeStringField("backendDeveloper", node.getBackendDeveloper());
+        generator.writeStringField("frontendDeveloper", node.getFrontendDeveloper());
+        generator.writeStringField("tester", node.getTester());
+        generator.writeStringField("requirementReference", node.getRequirementReference());
+        generator.writeStringField("status", node.getStatus() != null ? node.getStatus().name() : null);
+        generator.writeArrayFieldStart("children");
+    }
+
+    private void closeNode(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public NodePageDto getChildren(Long nodeId, int depth, int limit, Long after) {
+        validatePaging(depth, limit);
+        if (nodeId == null || mindMapNodeMapper.selectCount(new QueryWrapper<MindMapNode>().eq("id", nodeId)) == 0) {
+            return null;
+        }
+        QueryWrapper<MindMapNode> pageQuery = new QueryWrapper<>();
+        pageQuery.select(SUMMARY_COLUMNS).eq("parent_id", nodeId);
+        return nodeEditBuffer.read(() -> loadPage(pageQuery, depth, limit, after));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public NodePageDto getRootNodes(String requirementId, int depth, int limit, Long after) {
+        validatePaging(depth, limit);
+        if (!StringUtils.hasText(requirementId)) {
+            return new NodePageDto(List.of(), null);
+        }
+        QueryWrapper<MindMapNode> pageQuery = new QueryWrapper<>();
+        pageQuery.select(SUMMARY_COLUMNS).eq("requirement_id", requirementId).isNull("parent_id");
+        return nodeEditBuffer.read(() -> loadPage(pageQuery, depth, limit, after));
+    }
+
+    private void validatePaging(int depth, int limit) {
+        MindMapProperties.Lazy lazy = mindMapProperties.getLazy();
+        if (depth < 1 || depth > lazy.getMaxDepth()) {
+            throw new IllegalArgumentException("Depth must be between 1 and " + lazy.getMaxDepth());
+        }
+        if (limit < 1 || limit > lazy.getMaxLimit()) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + lazy.getMaxLimit());
+        }
+    }
+
+    private NodePageDto loadPage(QueryWrapper<MindMapNode> pageQuery, int depth, int limit, Long after) {
+        if (after != null) {
+            pageQuery.gt("id", after);
+        }
+        pageQuery.orderByAsc("id").last("LIMIT " + (limit + 1)); // one extra row tells us whether there is a next page
+        List<MindMapNode> rows = mindMapNodeMapper.selectList(pageQuery);
+        boolean hasNextPage = rows.size() > limit;
+        if (hasNextPage) {
+            rows = rows.subList(0, limit);
+        }
+
+        List<NodeSummaryDto> items = rows.stream().map(this::toSummary).collect(Collectors.toList());
+        int loaded = items.size();
+        List<NodeSummaryDto> level = items;
+        int maxNodes = mindMapProperties.getLazy().getMaxNodes();
+        // Each further level costs one windowed query, whatever the number of parents on it.
+        for (int d = 1; d < depth && !level.isEmpty() && loaded < maxNodes; d++) {
+            Map<Long, NodeSummaryDto> parents = new LinkedHashMap<>();
+            for (NodeSummaryDto parent : level) {
+                parent.setChildren(new ArrayList<>());
+                parents.put(parent.getId(), parent);
+            }
+            // The window is sized to what is left of maxNodes, so one level never reads far past the cap.
+            int perParentLimit = Math.min(limit, Math.max(1, (maxNodes - loaded) / parents.size()));
+            List<NodeSummaryDto> nextLevel = new ArrayList<>();
+            for (MindMapNode child : mindMapNodeMapper.selectChildrenWindow(parents.keySet(), perParentLimit + 1)) {
+                NodeSummaryDto parent = parents.get(child.getParentId());
+                if (parent.getChildren().size() == perParentLimit || loaded + nextLevel.size() >= maxNodes) {
+                    parent.setHasMoreChildren(true); // the rest comes from the children endpoint
+                    continue;
                 }
+                NodeSummaryDto dto = toSummary(child);
+                parent.getChildren().add(dto);
+                nextLevel.add(dto);
             }
+            loaded += nextLevel.size();
+            level = nextLevel;
         }
-        return tree;
+
+        Long nextCursor = hasNextPage ? rows.get(rows.size() - 1).getId() : null;
+        return new NodePageDto(items, nextCursor);
+    }
+
+    private NodeSummaryDto toSummary(MindMapNode node) {
+        nodeEditBuffer.overlay(node);
+        NodeSummaryDto dto = new NodeSummaryDto();
+        dto.setId(node.getId());
+        dto.setParentId(node.getParentId());
+        dto.setDescription(node.getDescription());
+        dto.setRequirementId(node.getRequirementId());
+        dto.setBackendDeveloper(node.getBackendDeveloper());
+        dto.setFrontendDeveloper(node.getFrontendDeveloper());
+        dto.setTester(node.getTester());
+        dto.setStatus(node.getStatus());
+        // Read from the persisted counters, no subtree scan
+        dto.setChildCount(StatusCounts.childrenOf(node).total());
+        StatusCounts descendants = StatusCounts.descendantsOf(node);
+        for (NodeStatus status : NodeStatus.values()) {
+            dto.getDescendantStatusCounts().put(status, (long) descendants.get(status));
+        }
+        return dto;
     }
 
     @Override
-    @Transactional
-    public void deleteNodeAndChildren(Long nodeId) {
-        MindMapNode node = mindMapNodeMapper.selectById(nodeId);
-        if (node == null) {
-            // Or throw an exception e.g., NodeNotFoundException
-            return;
+    public PropagationStateDto getPropagationState(String requirementId) {
+        return asyncPropagationQueue.getState(requirementId);
+    }
+
+    @Override
+    public SseEmitter subscribeToChanges(String requirementId, String lastEventId) {
+        if (!StringUtils.hasText(requirementId)) {
+            throw new IllegalArgumentException("Requirement ID cannot be empty");
+        }
+        return nodeChangeFeed.subscribe(requirementId, lastEventId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public NodeSearchResultDto searchNodes(String text, String requirementId, String tester, String developer, int limit) {
+        if (!StringUtils.hasText(text) && !StringUtils.hasText(tester) && !StringUtils.hasText(developer)) {
+            throw new IllegalArgumentException("Search needs words, a tester or a developer");
+        }
+        int maxLimit = mindMapProperties.getSearch().getMaxLimit();
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + maxLimit);
+        }
+        NodeSearchIndex.Hits hits = nodeSearchIndex.search(text, StringUtils.hasText(requirementId) ? requirementId : null,
+                tester, developer, limit);
+        NodeSearchResultDto result = new NodeSearchResultDto();
+        result.setTotal(hits.total);
+        result.setComplete(nodeSearchIndex.isReady());
+        if (hits.ids.isEmpty()) {
+            return result;
+        }
+
+        // Rows and ancestors by primary key: one query each, whatever the number of hits
+        Map<Long, MindMapNode> nodes = nodeEditBuffer.read(() -> mindMapNodeMapper.selectBatchIds(hits.ids)).stream()
+                .map(nodeEditBuffer::overlay)
+                .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+        Set<Long> ancestorIds = nodes.values().stream()
+                .flatMap(node -> NodePaths.ancestorIds(node.getPath()).stream())
+                .collect(Collectors.toSet());
+        Map<Long, String> ancestorDescriptions = new HashMap<>();
+        if (!ancestorIds.isEmpty()) {
+            QueryWrapper<MindMapNode> ancestorQuery = new QueryWrapper<>();
+            ancestorQuery.select("id", "description").in("id", ancestorIds);
+            mindMapNodeMapper.selectList(ancestorQuery).forEach(a -> ancestorDescriptions.put(a.getId(), a.getDescription()));
+        }
+        for (int i = 0; i < hits.ids.size(); i++) {
+            MindMapNode node = nodes.get(hits.ids.get(i));
+            if (node == null) {
+                continue; // deleted after the search, before the index caught up
+            }
+            NodeSearchResultDto.Hit hit = new NodeSearchResultDto.Hit();
+            hit.setNode(node);
+            hit.setScore(hits.scores.get(i));
+            for (Long ancestorId : NodePaths.ancestorIds(node.getPath())) {
+                NodeSearchResultDto.PathElement element = new NodeSearchResultDto.PathElement();
+                element.setId(ancestorId);
+                element.setDescription(ancestorDescriptions.get(ancestorId));
+                hit.getPath().add(element);
+            }
+            result.getHits().add(hit);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PersonWorkload> getRequirementWorkload(String requirementId, WorkloadRole role) {
+        if (!StringUtils.hasText(requirementId)) {
+            throw new IllegalArgumentException("Requirement ID cannot be empty");
+        }
+        // One row per person and role, maintained by WorkloadCounters; no node is read
+        return workloadMapper.selectByRequirement(requirementId, role);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PersonWorkload> getPersonWorkload(String person, WorkloadRole role) {
+        if (!StringUtils.hasText(person)) {
+            throw new IllegalArgumentException("Person cannot be empty");
+        }
+        return workloadMapper.selectByPerson(person, role);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public String getRequirementRevision(String requirementId) {
+        if (!StringUtils.hasText(requirementId)) {
+            return "0";
         }
-        deleteChildrenRecursive(nodeId); // Helper to delete all children
-        mindMapNodeMapper.deleteById(nodeId); // Delete the node itself
+        // Buffered edits are not in the stored revision yet. The suffix is read on both sides of the
+        // revision: a flush committing in between bumps the revision and drops the suffix, and the
+        // pair must not fall back to the ETag from before the edits.
+        String suffix;
+        Long revision;
+        do {
+            suffix = nodeEditBuffer.revisionSuffix(requirementId);
+            revision = requirementRevisionMapper.selectRevision(requirementId);
+        } while (!suffix.equals(nodeEditBuffer.revisionSuffix(requirementId)));
+        return (revision != null ? revision : 0L) + suffix;
     }
 
-    private void deleteChildrenRecursive(Long parentId) {
+    private MindMapTree loadMindMap(String requirementId) {
         QueryWrapper<MindMapNode> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("parent_id", parentId);
-        List<MindMapNode> children = mindMapNodeMapper.selectList(queryWrapper);
+        // Ordered by id so siblings come out oldest first, as in the lazy pages; the requirement_id index is already in id order
+        queryWrapper.eq("requirement_id", requirementId).orderByAsc("id");
+        List<MindMapNode> flatList = mindMapNodeMapper.selectList(queryWrapper);
+        flatList.forEach(nodeEditBuffer::overlay);
+        return treeAssembler.assemble(requirementId, flatList);
+    }
 
-        for (MindMapNode child : children) {
-            deleteChildrenRecursive(child.getId()); // Recursively delete children of this child
-            mindMapNodeMapper.deleteById(child.getId()); // Delete this child
+    @Override
+    @Transactional
+    public NodeImportReportDto importNodes(Long parentId, List<MindMapNodeDto> roots) {
+        if (roots == null) {
+            throw new IllegalArgumentException("Import body cannot be null");
+        }
+        return importEntries(parentId, nodeImporter.flatten(roots));
+    }
+
+    @Override
+    @Transactional
+    public NodeImportReportDto importNodesNdjson(Long parentId, InputStream ndjson) throws IOException {
+        return importEntries(parentId, nodeImporter.readNdjson(ndjson));
+    }
+
+    private NodeImportReportDto importEntries(Long parentId, List<NodeImporter.Entry> entries) {
+        MindMapNode attachTo = null;
+        if (parentId != null) {
+            attachTo = mindMapNodeMapper.selectHierarchyById(parentId);
+            if (attachTo == null) {
+                throw new IllegalArgumentException("Parent node does not exist: " + parentId);
+            }
+        }
+        NodeImportReportDto report = nodeImporter.write(attachTo, entries);
+        // One event per imported top-level node; clients load the new subtree on demand.
+        for (NodeImporter.Entry entry : entries) {
+            if (entry.parent < 0) {
+                NodeChangeEventDto added = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_ADDED, entry.node.getRequirementId(), entry.node.getId());
+                added.setParentId(parentId);
+                added.setStatus(entry.node.getStatus());
+                added.setSubtree(true);
+                nodeChangeFeed.record(added);
+                nodeSearchIndex.subtreeChanged(entry.node.getId());
+            }
+        }
+        Set<String> touchedRequirements = entries.stream().map(entry -> entry.node.getRequirementId()).collect(Collectors.toCollection(HashSet::new));
+        if (attachTo != null && !entries.isEmpty()) {
+            touchedRequirements.add(attachTo.getRequirementId());
+        }
+        requirementsChanged(touchedRequirements);
+        return report;
+    }
+
+    @Override
+    @Transactional
+    public int deleteNodeAndChildren(Long nodeId) {
+        MindMapNode node = mindMapNodeMapper.selectHierarchyById(nodeId);
+        if (node == null) {
+            // Or throw an exception e.g., NodeNotFoundException
+            return 0;
+        }
+        // One range read for the whole subtree, including the node itself.
+        QueryWrapper<MindMapNode> subtreeQuery = new QueryWrapper<>();
+        subtreeQuery.select("id", "depth", "requirement_id").likeRight("path", node.getPath());
+        List<MindMapNode> subtree = mindMapNodeMapper.selectList(subtreeQuery);
+
+        statusPropagationEngine.subtreeRemoved(node);
+
+        // Delete deepest level first so fk_mind_map_node_parent never sees a dangling child.
+        // Rows on the same level never reference each other, so each level can go in any order.
+        Map<Integer, List<Long>> idsByDepth = new TreeMap<>(Comparator.reverseOrder());
+        for (MindMapNode member : subtree) {
+            idsByDepth.computeIfAbsent(member.getDepth(), d -> new ArrayList<>()).add(member.getId());
         }
+        int chunkSize = Math.max(1, mindMapProperties.getDelete().getChunkSize());
+        int deleted = 0;
+        for (List<Long> levelIds : idsByDepth.values()) {
+            for (int from = 0; from < levelIds.size(); from += chunkSize) {
+                List<Long> chunk = levelIds.subList(from, Math.min(from + chunkSize, levelIds.size()));
+                deleted += mindMapNodeMapper.deleteBatchIds(chunk);
+            }
+        }
+        NodeChangeEventDto removed = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_DELETED, node.getRequirementId(), nodeId);
+        removed.setSubtree(true);
+        nodeChangeFeed.record(removed);
+        nodeSearchIndex.subtreeRemoved(nodeId);
+        requirementsChanged(subtree.stream().map(MindMapNode::getRequirementId).collect(Collectors.toSet()));
+        return deleted;
     }
 
     @Override
     @Transactional
     public void deleteNodeKeepChildren(Long nodeId) {
-        MindMapNode nodeToDelete = mindMapNodeMapper.selectById(nodeId);
+        MindMapNode nodeToDelete = mindMapNodeMapper.selectHierarchyById(nodeId);
         if (nodeToDelete == null) {
             // Or throw an exception
             return;
         }
 
         Long newParentId = nodeToDelete.getParentId(); // Children will move to this node's parent
+        statusPropagationEngine.nodeRemovedKeepingChildren(nodeToDelete);
+        QueryWrapper<MindMapNode> childQuery = new QueryWrapper<>();
+        childQuery.select("id", "requirement_id").eq("parent_id", nodeId);
+        List<MindMapNode> children = mindMapNodeMapper.selectList(childQuery);
 
-        QueryWrapper<MindMapNode> childrenQuery = new QueryWrapper<>();
-        childrenQuery.eq("parent_id", nodeId);
-        List<MindMapNode> children = mindMapNodeMapper.selectList(childrenQuery);
+        UpdateWrapper<MindMapNode> reparentChildren = new UpdateWrapper<>();
+        reparentChildren.set("parent_id", newParentId).eq("parent_id", nodeId);
+        mindMapNodeMapper.update(null, reparentChildren);
+
+        mindMapNodeMapper.deleteById(nodeId); // Delete the node
 
+        // Drop the deleted node's segment from every descendant path: "/a/n/x/" becomes "/a/x/".
+        String oldPrefix = nodeToDelete.getPath();
+        String newPrefix = oldPrefix.substring(0, oldPrefix.length() - (nodeId + "/").length());
+        mindMapNodeMapper.rewriteSubtreePath(oldPrefix, newPrefix, -1, null);
+
+        nodeChangeFeed.record(NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_DELETED, nodeToDelete.getRequirementId(), nodeId));
         for (MindMapNode child : children) {
-            child.setParentId(newParentId);
-            mindMapNodeMapper.updateById(child);
+            NodeChangeEventDto reparented = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_REPARENTED, child.getRequirementId(), child.getId());
+            reparented.setParentId(newParentId);
+            nodeChangeFeed.record(reparented);
+            nodeSearchIndex.subtreeChanged(child.getId()); // paths lost a segment
         }
+        nodeSearchIndex.nodesChanged(List.of(nodeId));
+        requirementChanged(nodeToDelete.getRequirementId());
+    }
 
-        mindMapNodeMapper.deleteById(nodeId); // Delete the node
+    @Override
+    @Transactional
+    public MindMapNode moveNode(Long nodeId, Long newParentId, String requirementId) {
+        if (nodeId == null) {
+            throw new IllegalArgumentException("Node ID cannot be null");
+        }
+        if (nodeId.equals(newParentId)) {
+            throw new IllegalArgumentException("A node cannot be moved under itself");
+        }
+        MindMapNode node = mindMapNodeMapper.selectHierarchyById(nodeId);
+        if (node == null) {
+            return null;
+        }
+        MindMapNode newParent = null;
+        if (newParentId != null) {
+            newParent = mindMapNodeMapper.selectHierarchyById(newParentId);
+            if (newParent == null) {
+                throw new IllegalArgumentException("Target parent node " + newParentId + " not found");
+            }
+        }
+
+        // Lock the moved node and the whole target chain: two moves that each pass the cycle check on their
+        // own (a under b, and an ancestor of b under a) then serialize, and the second one sees the first.
+        List<Long> lockIds = new ArrayList<>();
+        lockIds.add(nodeId);
+        if (newParent != null) {
+            lockIds.addAll(NodePaths.ancestorIds(newParent.getPath()));
+            lockIds.add(newParentId);
+        }
+        Map<Long, MindMapNode> locked = mindMapNodeMapper.selectHierarchyByIds(lockIds, true).stream()
+                .collect(Collectors.toMap(MindMapNode::getId, n -> n));
+        node = locked.get(nodeId);
+        if (node == null) {
+            return null;
+        }
+        if (newParent != null) {
+            MindMapNode lockedParent = locked.get(newParentId);
+            if (lockedParent == null || !lockedParent.getPath().equals(newParent.getPath())) {
+                throw new OptimisticLockingFailureException("Target parent node " + newParentId + " was moved or deleted concurrently");
+            }
+            newParent = lockedParent;
+            // The target is inside the moved subtree exactly when its path starts with the node's path
+            if (newParent.getPath().startsWith(node.getPath())) {
+                throw new IllegalArgumentException("Node " + nodeId + " cannot be moved below its own descendant " + newParentId);
+            }
+        }
+
+        // Below a parent the subtree joins the parent's requirement; as a root it may be re-homed explicitly.
+        String targetRequirement = newParent != null ? newParent.getRequirementId()
+                : requirementId != null ? requirementId : node.getRequirementId();
+        if (requirementId != null && !requirementId.equals(targetRequirement)) {
+            throw new IllegalArgumentException("Target parent node " + newParentId + " belongs to requirement " + targetRequirement);
+        }
+        boolean requirementMoved = !Objects.equals(targetRequirement, node.getRequirementId());
+        if (Objects.equals(newParentId, node.getParentId()) && !requirementMoved) {
+            return getNodeById(nodeId); // already there
+        }
+
+        MindMapNode moved = new MindMapNode();
+        moved.setId(nodeId);
+        moved.setParentId(newParentId);
+        moved.setPath(NodePaths.childPath(newParent != null ? newParent.getPath() : null, nodeId));
+        moved.setDepth(newParent != null ? newParent.getDepth() + 1 : 0);
+        moved.setStatus(node.getStatus());
+
+        UpdateWrapper<MindMapNode> reparent = new UpdateWrapper<>();
+        reparent.set("parent_id", newParentId).eq("id", nodeId);
+        mindMapNodeMapper.update(null, reparent);
+        if (requirementMoved) {
+            workloadCounters.subtreeMoving(node.getPath(), targetRequirement);
+        }
+        // One statement for the whole subtree, however large: paths, depths and (if needed) requirement ids
+        mindMapNodeMapper.rewriteSubtreePath(node.getPath(), moved.getPath(), moved.getDepth() - node.getDepth(),
+                requirementMoved ? targetRequirement : null);
+
+        StatusPropagationEngine.Propagation propagation = statusPropagationEngine.begin();
+        propagation.move(node, moved);
+        Map<Long, MindMapNode> changedAncestors = new LinkedHashMap<>(propagation.finish());
+        if (asyncPropagationQueue.isEnabled()) {
+            // A status change in the subtree may still be queued. Its run recounts only the chain the node is on
+            // by then, so the chain it leaves is recounted here from the children it has left.
+            changedAncestors.putAll(statusPropagationEngine.recountAncestors(List.of(node.getPath())));
+        }
+
+        if (requirementMoved) {
+            NodeChangeEventDto removed = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_DELETED, node.getRequirementId(), nodeId);
+            removed.setSubtree(true);
+            nodeChangeFeed.record(removed);
+            NodeChangeEventDto added = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_ADDED, targetRequirement, nodeId);
+            added.setParentId(newParentId);
+            added.setStatus(node.getStatus());
+            added.setVersion(node.getVersion());
+            added.setSubtree(true);
+            nodeChangeFeed.record(added);
+        } else {
+            NodeChangeEventDto reparented = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_REPARENTED, targetRequirement, nodeId);
+            reparented.setParentId(newParentId);
+            reparented.setSubtree(true);
+            nodeChangeFeed.record(reparented);
+        }
+        nodeChangeFeed.recordDerivedStatuses(changedAncestors.values());
+        nodeSearchIndex.subtreeChanged(nodeId);
+
+        Set<String> touchedRequirements = new HashSet<>();
+        touchedRequirements.add(node.getRequirementId());
+        touchedRequirements.add(targetRequirement);
+        requirementsChanged(touchedRequirements);
+        return getNodeById(nodeId);
     }
 
     @Override
     @Transactional
-    public MindMapNode updateNodeDescription(Long nodeId, String description) {
+    public MindMapNode updateNodeDescription(Long nodeId, String description, Integer expectedVersion) {
         if (nodeId == null) {
             throw new IllegalArgumentException("Node ID cannot be null");
         }
         if (!StringUtils.hasText(description)) {
             throw new IllegalArgumentException("Description cannot be empty");
         }
+        if (nodeEditBuffer.isEnabled()) {
+            return bufferFieldUpdate(nodeId, "description", description, expectedVersion);
+        }
         MindMapNode node = mindMapNodeMapper.selectById(nodeId);
         if (node == null) {
             // Or throw a custom NodeNotFoundException
             return null;
         }
+        UpdateWrapper<MindMapNode> changes = new UpdateWrapper<>();
+        changes.set("description", description);
+        node.setVersion(updateVersioned(nodeId, expectedVersion != null ? expectedVersion : node.getVersion(), changes));
         node.setDescription(description);
-        mindMapNodeMapper.updateById(node);
+        recordFieldUpdate(node, "description");
+        nodeSearchIndex.nodesChanged(List.of(nodeId));
+        requirementChanged(node.getRequirementId());
         return node;
     }
 
     @Override
     @Transactional
-    public MindMapNode updateNodeRemarks(Long nodeId, String remarks) {
+    public MindMapNode updateNodeRemarks(Long nodeId, String remarks, Integer expectedVersion) {
         if (nodeId == null) {
             throw new IllegalArgumentException("Node ID cannot be null");
         }
+        if (nodeEditBuffer.isEnabled()) {
+            return bufferFieldUpdate(nodeId, "remarks", remarks, expectedVersion);
+        }
         MindMapNode node = mindMapNodeMapper.selectById(nodeId);
         if (node == null) {
             // Or throw a custom NodeNotFoundException
             return null;
         }
-        node.setRemarks(remarks); // Remarks can be empty or null
-        mindMapNodeMapper.updateById(node);
+        UpdateWrapper<MindMapNode> changes = new UpdateWrapper<>();
+        changes.set("remarks", remarks); // Remarks can be empty or null
+        node.setVersion(updateVersioned(nodeId, expectedVersion != null ? expectedVersion : node.getVersion(), changes));
+        node.setRemarks(remarks);
+        recordFieldUpdate(node, "remarks");
+        nodeSearchIndex.nodesChanged(List.of(nodeId));
+        requirementChanged(node.getRequirementId());
+        return node;
+    }
+
+    // Write-behind mode: the edit is buffered and written by a later flush, which also updates the search index.
+    private MindMapNode bufferFieldUpdate(Long nodeId, String field, String value, Integer expectedVersion) {
+        MindMapNode node = nodeEditBuffer.accept(nodeId, field, value, expectedVersion);
+        if (node != null) {
+            recordFieldUpdate(node, field);
+        }
         return node;
     }
 
     @Override
     @Transactional
-    public MindMapNode setNodeStatus(Long nodeId, com.example.mindmap.entity.NodeStatus status) {
+    public MindMapNode setNodeStatus(Long nodeId, com.example.mindmap.entity.NodeStatus status, Integer expectedVersion) {
         if (nodeId == null) {
             throw new IllegalArgumentException("Node ID cannot be null");
         }
         if (status == null) {
             throw new IllegalArgumentException("Status cannot be null");
         }
-        MindMapNode node = mindMapNodeMapper.selectById(nodeId);
+        MindMapNode node = mindMapNodeMapper.selectHierarchyById(nodeId); // the response is read in full at the end
         if (node == null) {
             // Or throw a custom NodeNotFoundException
             return null;
         }
-        node.setStatus(status);
-        mindMapNodeMapper.updateById(node);
-
-        // Recalculation logic
-        recalculateChildrenStatusRecursive(nodeId, status);
-        if (node.getParentId() != null) { // Only recalculate parent if there is a parent
-          recalculateParentStatusRecursive(nodeId); // Pass current node's ID
+        // The clicked row itself is the versioned write; descendants and ancestors are derived state and not versioned.
+        UpdateWrapper<MindMapNode> changes = new UpdateWrapper<>();
+        changes.set("status", status);
+        // Client versions include buffered edits (write-behind mode), the stored row does not yet.
+        int buffered = nodeEditBuffer.bufferedVersions(nodeId);
+        Integer version = updateVersioned(nodeId, expectedVersion != null ? expectedVersion - buffered : node.getVersion(), changes) + buffered;
+        workloadCounters.statusChanged(node, node.getStatus(), status);
+        recordStatusChange(node, status, version, !asyncPropagationQueue.isEnabled());
+        if (asyncPropagationQueue.isEnabled()) {
+            // Subtree and ancestors follow from the queue after commit.
+            asyncPropagationQueue.enqueue(List.of(node), status);
+            requirementChanged(node.getRequirementId());
+            return getNodeById(nodeId);
         }
-        
-        return node;
+        // Recalculation logic: the node and its whole subtree in one statement, then each ancestor once.
+        // node still carries its previous status, which the counters are adjusted from.
+        relockHierarchy(List.of(node));
+        StatusPropagationEngine.Propagation propagation = statusPropagationEngine.begin();
+        propagation.setSubtreeStatus(node, status);
+        Set<String> touchedRequirements = new HashSet<>();
+        touchedRequirements.add(node.getRequirementId());
+        Collection<MindMapNode> changedAncestors = propagation.finish().values();
+        changedAncestors.forEach(ancestor -> touchedRequirements.add(ancestor.getRequirementId()));
+        nodeChangeFeed.recordDerivedStatuses(changedAncestors);
+        requirementsChanged(touchedRequirements);
+
+        return getNodeById(nodeId); // fresh state, counters included
     }
 
     @Override
     @Transactional
-    public List<MindMapNode> batchSetNodeStatus(List<Long> nodeIds, com.example.mindmap.entity.NodeStatus status) {
+    public BatchStatusUpdateResultDto batchSetNodeStatus(List<Long> nodeIds, com.example.mindmap.entity.NodeStatus status,
+                                                         Map<Long, Integer> expectedVersions) {
         if (nodeIds == null || nodeIds.isEmpty()) {
             throw new IllegalArgumentException("Node IDs list cannot be null or empty");
         }
@@ -220,115 +837,183 @@ public class MindMapServiceImpl implements MindMapService {
             throw new IllegalArgumentException("Status cannot be null");
         }
         
-        List<MindMapNode> updatedNodes = new ArrayList<>();
-        // Keep track of parents for upward recalculation to avoid redundant checks on the same parent.
-        // However, the recursive nature of recalculateParentStatusRecursive handles some of this,
-        // but calling it multiple times for siblings is inefficient.
-        // For simplicity in this iteration, we'll call it for each node.
-        // A more optimized approach would collect unique parentIds and then iterate them.
-
-        for (Long nodeId : nodeIds) {
-            MindMapNode node = mindMapNodeMapper.selectById(nodeId);
-            if (node != null) {
-                if (node.getStatus() != status) { // Only process if status is changing
-                    node.setStatus(status);
-                    mindMapNodeMapper.updateById(node);
-                    
-                    recalculateChildrenStatusRecursive(nodeId, status);
-                    // No need to call parent recalculation here for each node in the batch immediately.
-                    // It's better to do it after all nodes in the batch have their direct status and children updated.
-                }
-                // We add the node to the list of results even if its status didn't change,
-                // or we could choose to only add nodes that were actually modified.
-                // Let's add it if it exists.
-                updatedNodes.add(mindMapNodeMapper.selectById(nodeId)); // fetch fresh state
+        // Load the whole batch in one round trip; duplicates and unknown ids are dropped.
+        Set<Long> uniqueIds = new LinkedHashSet<>(nodeIds);
+        Map<Long, MindMapNode> batchNodes = mindMapNodeMapper.selectHierarchyByIds(uniqueIds, false).stream()
+                .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+
+        BatchStatusUpdateResultDto result = new BatchStatusUpdateResultDto();
+        List<MindMapNode> processed = new ArrayList<>();
+        for (Long nodeId : uniqueIds) {
+            MindMapNode node = batchNodes.get(nodeId);
+            if (node == null) {
+                continue;
             }
+            Integer expected = expectedVersions != null ? expectedVersions.get(nodeId) : null;
+            int current = node.getVersion() + nodeEditBuffer.bufferedVersions(nodeId);
+            if (expected != null && expected != current) {
+                // Stale client version: report it and leave the node alone, the rest of the batch goes on.
+                result.getConflicts().add(new BatchStatusUpdateResultDto.VersionConflict(nodeId, expected, current));
+            } else {
+                processed.add(node);
+            }
+        }
+        // Rows edited between our read and this write are conflicts too.
+        processed.removeAll(writeStatusVersioned(processed, status, result));
+        if (processed.isEmpty()) {
+            return result;
+        }
+        processed.forEach(node -> workloadCounters.statusChanged(node, node.getStatus(), status));
+
+        if (asyncPropagationQueue.isEnabled()) {
+            // Subtrees and ancestors follow from the queue after commit.
+            // As in the synchronous path, nodes already in the target status only trigger parent recalculation.
+            Map<Boolean, List<MindMapNode>> changing = processed.stream()
+                    .collect(Collectors.partitioningBy(node -> node.getStatus() != status));
+            changing.get(true).forEach(node -> recordStatusChange(node, status,
+                    node.getVersion() + nodeEditBuffer.bufferedVersions(node.getId()), false));
+            asyncPropagationQueue.enqueue(changing.get(true), status);
+            asyncPropagationQueue.enqueue(changing.get(false), null);
+            requirementsChanged(processed.stream().map(MindMapNode::getRequirementId).collect(Collectors.toSet()));
+            Map<Long, MindMapNode> saved = nodeEditBuffer.read(() -> mindMapNodeMapper.selectBatchIds(processed.stream().map(MindMapNode::getId).collect(Collectors.toList()))).stream()
+                    .map(nodeEditBuffer::overlay)
+                    .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+            processed.stream().map(node -> saved.get(node.getId())).filter(Objects::nonNull).forEach(result.getNodes()::add);
+            return result;
         }
 
-        // After all nodes in the batch and their children are updated,
-        // trigger parent recalculation for each *unique* parent of the nodes in the batch.
-        // Simpler approach for batch parent recalculation for this iteration:
-        // (This replaces the Set logic above)
-        for (Long nodeId : nodeIds) {
-            MindMapNode node = mindMapNodeMapper.selectById(nodeId); // get fresh node
-            // Check if its status was intended to be changed by this batch operation.
-            // This is tricky because we don't have the original status easily here unless we query before loop.
-            // Let's assume if a node is in nodeIds, its parent *might* need recalculation.
-            if (node != null && node.getParentId() != null) {
-                 // Only trigger if the node's status actually IS the new batch status
-                 // (meaning it was either already that status, or was changed to it).
-                if(node.getStatus() == status){
-                     recalculateParentStatusRecursive(nodeId);
-                }
+        relockHierarchy(processed);
+        // Shallowest first: a batch node inside a subtree that was already set is skipped by the engine.
+        List<MindMapNode> topDown = new ArrayList<>(processed);
+        topDown.sort(Comparator.comparing(MindMapNode::getDepth));
+        StatusPropagationEngine.Propagation propagation = statusPropagationEngine.begin();
+        for (MindMapNode node : topDown) {
+            if (node.getStatus() != status) { // Only process if status is changing
+                recordStatusChange(node, status, node.getVersion() + nodeEditBuffer.bufferedVersions(node.getId()), true);
+                propagation.setSubtreeStatus(node, status);
+            } else {
+                // Nodes already in the target status are still reported and still trigger parent recalculation.
+                propagation.touch(node);
             }
         }
-        
-        // Refresh the list of updatedNodes before returning, as parent recalculations might have affected them.
-        // This is not strictly necessary if we return the nodes as they were after direct/child updates.
-        // The current updatedNodes list holds nodes after their status and their children's status were set.
-        // Parent recalculations are side effects that might affect nodes not even in the original list.
 
-        return updatedNodes; // Returns nodes from the batch, after their status and children's status are updated.
+        // Parents are recalculated once for the whole batch, after every direct and downward update,
+        // so ancestors shared by many batch nodes are recomputed a single time.
+        Map<Long, MindMapNode> changedAncestors = propagation.finish();
+        nodeChangeFeed.recordDerivedStatuses(changedAncestors.values());
+
+        Set<String> touchedRequirements = new HashSet<>();
+        processed.forEach(node -> touchedRequirements.add(node.getRequirementId()));
+        changedAncestors.values().forEach(node -> touchedRequirements.add(node.getRequirementId()));
+        requirementsChanged(touchedRequirements);
+
+        // Return the final state of the batch nodes followed by every ancestor whose status changed.
+        Set<Long> resultIds = new LinkedHashSet<>();
+        processed.forEach(node -> resultIds.add(node.getId()));
+        resultIds.addAll(changedAncestors.keySet());
+        Map<Long, MindMapNode> finalState = nodeEditBuffer.read(() -> mindMapNodeMapper.selectBatchIds(resultIds)).stream()
+                .map(nodeEditBuffer::overlay)
+                .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+        for (Long id : resultIds) {
+            MindMapNode node = finalState.get(id);
+            if (node != null) {
+                result.getNodes().add(node);
+            }
+        }
+        return result;
     }
 
-    // Helper Methods
-    private void recalculateChildrenStatusRecursive(Long parentId, com.example.mindmap.entity.NodeStatus newStatus) {
-        QueryWrapper<MindMapNode> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("parent_id", parentId);
-        List<MindMapNode> children = mindMapNodeMapper.selectList(queryWrapper);
-
-        for (MindMapNode child : children) {
-            child.setStatus(newStatus);
-            mindMapNodeMapper.updateById(child);
-            recalculateChildrenStatusRecursive(child.getId(), newStatus); // Recurse for grandchildren
+    // Writes only the columns set in changes, guarded by version; returns the new version.
+    private Integer updateVersioned(Long nodeId, Integer version, UpdateWrapper<MindMapNode> changes) {
+        MindMapNode versionOnly = new MindMapNode();
+        versionOnly.setStatus(null); // the entity default would otherwise be written as well
+        versionOnly.setVersion(version);
+        // The optimistic-lock interceptor adds "version = version + 1" and "AND version = ?"
+        if (mindMapNodeMapper.update(versionOnly, changes.eq("id", nodeId)) == 0) {
+            throw new OptimisticLockingFailureException("Node " + nodeId + " was modified concurrently (expected version " + version + ")");
         }
+        return versionOnly.getVersion();
     }
 
-    private void recalculateParentStatusRecursive(Long nodeId) {
-        MindMapNode currentNode = mindMapNodeMapper.selectById(nodeId);
-        if (currentNode == null || currentNode.getParentId() == null) {
-            return; // No parent or node doesn't exist, stop recursion
+    // Refreshes hierarchy and counters of nodes whose status row was just written, from the rows now locked by
+    // that write: propagation and moves committed meanwhile do not bump the version, and the
+    // subtree delta must start from what the rows hold now. Statuses stay the ones read before the write.
+    private void relockHierarchy(List<MindMapNode> nodes) {
+        Map<Long, MindMapNode> locked = mindMapNodeMapper.selectHierarchyByIds(
+                        nodes.stream().map(MindMapNode::getId).collect(Collectors.toList()), true).stream()
+                .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+        for (MindMapNode node : nodes) {
+            MindMapNode current = locked.get(node.getId());
+            node.setParentId(current.getParentId());
+            node.setPath(current.getPath());
+            node.setDepth(current.getDepth());
+            StatusCounts.childrenOf(current).writeChildrenTo(node);
+            StatusCounts.descendantsOf(current).writeDescendantsTo(node);
         }
+    }
 
-        Long parentId = currentNode.getParentId();
-        MindMapNode parentNode = mindMapNodeMapper.selectById(parentId);
-        if (parentNode == null) {
-            return; // Parent node somehow doesn't exist
+    // Sets status on every node with one JDBC batch of versioned updates; returns the nodes whose version
+    // no longer matched, after adding them to the result's conflicts.
+    private List<MindMapNode> writeStatusVersioned(List<MindMapNode> nodes, NodeStatus status, BatchStatusUpdateResultDto result) {
+        if (nodes.isEmpty()) {
+            return List.of();
         }
-
-        QueryWrapper<MindMapNode> siblingsQueryWrapper = new QueryWrapper<>();
-        siblingsQueryWrapper.eq("parent_id", parentId);
-        List<MindMapNode> siblings = mindMapNodeMapper.selectList(siblingsQueryWrapper);
-        
-        com.example.mindmap.entity.NodeStatus determinedParentStatus = com.example.mindmap.entity.NodeStatus.PENDING_TEST; // Default
-        
-        if (!siblings.isEmpty()) {
-            boolean allSameStatus = true;
-            com.example.mindmap.entity.NodeStatus firstSiblingStatus = siblings.get(0).getStatus();
-
-            for (MindMapNode sibling : siblings) {
-                if (sibling.getStatus() != firstSiblingStatus) {
-                    allSameStatus = false;
-                    break;
+        List<MindMapNode> rows = new ArrayList<>();
+        for (MindMapNode node : nodes) {
+            MindMapNode row = new MindMapNode();
+            row.setId(node.getId());
+            row.setStatus(status);
+            row.setVersion(node.getVersion());
+            rows.add(row);
+        }
+        List<BatchResult> batches = new MybatisBatch<>(sqlSessionFactory, rows)
+                .execute(new MybatisBatch.Method<MindMapNode>(MindMapNodeMapper.class).updateById());
+        List<MindMapNode> lost = new ArrayList<>();
+        int i = 0;
+        for (BatchResult batch : batches) {
+            for (int count : batch.getUpdateCounts()) {
+                if (count == 0) {
+                    lost.add(nodes.get(i));
+                } else {
+                    nodes.get(i).setVersion(rows.get(i).getVersion()); // bumped by the interceptor
                 }
+                i++;
             }
-
-            if (allSameStatus) {
-                determinedParentStatus = firstSiblingStatus;
+        }
+        if (!lost.isEmpty()) {
+            QueryWrapper<MindMapNode> versionQuery = new QueryWrapper<>();
+            versionQuery.select("id", "version").in("id", lost.stream().map(MindMapNode::getId).collect(Collectors.toList()));
+            Map<Long, Integer> current = new HashMap<>();
+            mindMapNodeMapper.selectList(versionQuery).forEach(node -> current.put(node.getId(), node.getVersion()));
+            for (MindMapNode node : lost) {
+                result.getConflicts().add(new BatchStatusUpdateResultDto.VersionConflict(node.getId(), node.getVersion(), current.get(node.getId())));
             }
         }
-        // If siblings list is empty (e.g. last child was deleted), what should parent status be?
-        // Current logic: if all children (0 in this case) are X, parent becomes X. This is tricky.
-        // Let's stick to: if there are children, and they are all X, parent is X. Otherwise PENDING_TEST.
-        // If no children, parent status remains unchanged by this specific logic path.
-        // This means deleting children one by one until none are left won't change parent status via this method.
-        // This might need refinement based on exact desired behavior for empty children list.
-        // For now, if determinedParentStatus is PENDING_TEST due to mixed statuses OR because all children matched and set it, then update.
+        return lost;
+    }
 
-        if (parentNode.getStatus() != determinedParentStatus) {
-            parentNode.setStatus(determinedParentStatus);
-            mindMapNodeMapper.updateById(parentNode);
-            recalculateParentStatusRecursive(parentId); // Recurse upwards
-        }
+    // A direct status change of node; subtree when its descendants were set in the same transaction.
+    private void recordStatusChange(MindMapNode node, NodeStatus status, Integer version, boolean subtree) {
+        NodeChangeEventDto event = NodeChangeEventDto.of(NodeChangeEventDto.Type.STATUS_CHANGED, node.getRequirementId(), node.getId());
+        event.setStatus(status);
+        event.setVersion(version);
+        event.setSubtree(subtree);
+        nodeChangeFeed.record(event);
+    }
+
+    private void recordFieldUpdate(MindMapNode node, String field) {
+        NodeChangeEventDto event = NodeChangeEventDto.of(NodeChangeEventDto.Type.NODE_UPDATED, node.getRequirementId(), node.getId());
+        event.setField(field);
+        event.setVersion(node.getVersion());
+        nodeChangeFeed.record(event);
+    }
+
+    private void requirementChanged(String requirementId) {
+        requirementsChanged(Collections.singleton(requirementId));
+    }
+
+    // Hook for everything derived from a requirement's nodes; called by every mutation.
+    private void requirementsChanged(Collection<String> requirementIds) {
+        requirementChanges.changed(requirementIds);
     }
 }
@@ -0,0 +1,329 @@
+package com.example.mindmap.service.impl;
+
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.dto.NodeChangeEventDto;
+import com.example.mindmap.entity.MindMapNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Per-requirement feed of committed node changes, streamed to subscribers as server-sent events.
+ * <p>
+ * Mutations {@link #record} events inside their transaction; they are published after commit
+ * (and dropped on rollback) and numbered with a per-requirement sequence. The SSE event id is
+ * {@code <epoch>:<sequence>}, where the epoch names this instance's start and the creation of the
+ * requirement's feed, so ids from another instance, from before a restart or from a feed dropped
+ * as idle never match. The last {@code mindmap.feed.replay-size} events of a requirement are
+ * kept, so a client reconnecting with {@code Last-Event-ID} catches up from there. A client too
+ * far behind, or whose id has another epoch, gets a {@code reset} event and reloads the tree.
+ * <p>
+ * Every subscriber has a bounded queue drained by a small sender pool, so a slow client never
+ * blocks a committing request. A subscriber whose queue overflows receives what is queued, is
+ * disconnected, and resumes from the replay buffer when it reconnects. A comment line is sent every
+ * {@code mindmap.feed.heartbeat-interval}, so streams of clients that went away are noticed and closed.
+ */
+@Component
+public class NodeChangeFeed {
+
+    // Sends per turn of one subscriber before the sender thread moves on to others
+    private static final int DRAIN_LIMIT = 64;
+    private static final long SWEEP_INTERVAL_MILLIS = 60_000;
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT = SseEmitter.event().comment("heartbeat").build();
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, RequirementFeed> feeds = new ConcurrentHashMap<>();
+    // Epoch prefix of every feed of this instance; feeds created later get a higher number
+    private final String instanceEpoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong feedsCreated = new AtomicLong();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private volatile long lastSweep = System.currentTimeMillis();
+    private ScheduledExecutorService sender;
+    private Counter overflows;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        MindMapProperties.Feed settings = mindMapProperties.getFeed();
+        sender = Executors.newScheduledThreadPool(settings.getSenderThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "mindmap-feed-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long heartbeat = settings.getHeartbeatInterval().toMillis();
+        sender.scheduleAtFixedRate(() -> subscribers.forEach(subscriber -> subscriber.offer(HEARTBEAT)),
+                heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        Gauge.builder("mindmap.feed.subscribers", subscribers, Set::size)
+                .description("Open change feed streams")
+                .register(meterRegistry);
+        overflows = Counter.builder("mindmap.feed.overflows")
+                .description("Change feed subscribers disconnected because they fell behind")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * Records a change made by the current transaction. Published once it commits; without a
+     * transaction, published at once. Events of nodes without a requirement are ignored.
+     */
+    public void record(NodeChangeEventDto event) {
+        if (event.getRequirementId() == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(List.of(event));
+            return;
+        }
+        // Looked up among the current transaction's synchronizations, so a REQUIRES_NEW transaction gets its own list
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingEvents pending) {
+                pending.events.add(event);
+                return;
+            }
+        }
+        PendingEvents pending = new PendingEvents();
+        pending.events.add(event);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /** Records a STATUS_CHANGED event for each node whose status was derived anew from its children. */
+    public void recordDerivedStatuses(Collection<MindMapNode> nodes) {
+        for (MindMapNode node : nodes) {
+            NodeChangeEventDto event = NodeChangeEventDto.of(NodeChangeEventDto.Type.STATUS_CHANGED, node.getRequirementId(), node.getId());
+            event.setStatus(node.getStatus());
+            record(event);
+        }
+    }
+
+    /**
+     * Opens a stream of the requirement's changes. With {@code lastEventId} (the client's
+     * {@code Last-Event-ID}) the events after it are replayed first.
+     */
+    public SseEmitter subscribe(String requirementId, String lastEventId) {
+        MindMapProperties.Feed settings = mindMapProperties.getFeed();
+        Subscriber subscriber = new Subscriber(new SseEmitter(settings.getEmitterTimeout().toMillis()));
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(subscriber.emitter::complete);
+        subscriber.emitter.onError(e -> unsubscribe(subscriber));
+        subscribers.add(subscriber);
+        feeds.compute(requirementId, (id, feed) -> {
+            feed = feed != null ? feed : new RequirementFeed();
+            feed.add(subscriber, lastEventId);
+            return feed;
+        });
+        return subscriber.emitter;
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        subscriber.close();
+        if (subscribers.remove(subscriber) && subscriber.feed != null) {
+            subscriber.feed.remove(subscriber);
+        }
+    }
+
+    private void publish(List<NodeChangeEventDto> events) {
+        Map<String, List<NodeChangeEventDto>> byRequirement = events.stream().collect(
+                Collectors.groupingBy(NodeChangeEventDto::getRequirementId, LinkedHashMap::new, Collectors.toList()));
+        byRequirement.forEach((requirementId, requirementEvents) -> feeds.compute(requirementId, (id, feed) -> {
+            feed = feed != null ? feed : new RequirementFeed();
+            feed.append(requirementEvents);
+            return feed;
+        }));
+        long now = System.currentTimeMillis();
+        if (now - lastSweep > SWEEP_INTERVAL_MILLIS) {
+            lastSweep = now;
+            long cutoff = now - mindMapProperties.getFeed().getReplayRetention().toMillis();
+            for (String requirementId : feeds.keySet()) {
+                feeds.computeIfPresent(requirementId, (id, feed) -> feed.isIdleSince(cutoff) ? null : feed);
+            }
+        }
+    }
+
+
+    // Events recorded by one transaction, registered as its synchronization.
+    private class PendingEvents implements TransactionSynchronization {
+        final List<NodeChangeEventDto> events = new ArrayList<>();
+
+        @Override
+        public void afterCommit() {
+            publish(events);
+        }
+    }
+
+    private class RequirementFeed {
+        private final String epoch = instanceEpoch + "-" + feedsCreated.incrementAndGet();
+        private final ArrayDeque<NodeChangeEventDto> replay = new ArrayDeque<>();
+        private final List<Subscriber> members = new ArrayList<>();
+        private long sequence;
+        private long lastEventAt = System.currentTimeMillis();
+
+        synchronized void append(List<NodeChangeEventDto> events) {
+            int replaySize = mindMapProperties.getFeed().getReplaySize();
+            for (NodeChangeEventDto event : events) {
+                event.setSequence(++sequence);
+                replay.addLast(event);
+                if (replay.size() > replaySize) {
+                    replay.removeFirst();
+                }
+                Set<ResponseBodyEmitter.DataWithMediaType> message = changeEvent(event);
+                for (Subscriber member : members) {
+                    member.offer(message);
+                }
+            }
+            lastEventAt = System.currentTimeMillis();
+        }
+
+        synchronized void add(Subscriber subscriber, String lastEventId) {
+            subscriber.feed = this;
+            if (lastEventId == null) {
+                subscriber.offer(controlEvent("subscribed", sequence));
+            } else {
+                long lastSequence = sequenceOf(lastEventId);
+                long oldest = replay.isEmpty() ? sequence + 1 : replay.peekFirst().getSequence();
+                boolean replayable = lastSequence >= 0 && lastSequence <= sequence && lastSequence >= oldest - 1
+                        && sequence - lastSequence < mindMapProperties.getFeed().getSubscriberBuffer();
+                if (replayable) {
+                    for (NodeChangeEventDto event : replay) {
+                        if (event.getSequence() > lastSequence) {
+                            subscriber.offer(changeEvent(event));
+                        }
+                    }
+                } else {
+                    subscriber.offer(controlEvent("reset", sequence));
+                }
+            }
+            members.add(subscriber);
+        }
+
+        synchronized void remove(Subscriber subscriber) {
+            members.remove(subscriber);
+        }
+
+        synchronized boolean isIdleSince(long cutoff) {
+            return members.isEmpty() && lastEventAt < cutoff;
+        }
+
+        // Sequence of an event id of this feed; -1 for ids of another epoch and anything unparsable
+        private long sequenceOf(String eventId) {
+            int separator = eventId.lastIndexOf(':');
+            if (separator < 0 || !epoch.equals(eventId.substring(0, separator))) {
+                return -1;
+            }
+            try {
+                return Long.parseLong(eventId.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        // Built once and shared by all subscribers; a builder itself is not safe to send from several threads.
+        private Set<ResponseBodyEmitter.DataWithMediaType> changeEvent(NodeChangeEventDto event) {
+            return SseEmitter.event().id(epoch + ":" + event.getSequence()).name("change")
+                    .data(event, MediaType.APPLICATION_JSON).build();
+        }
+
+        // "subscribed" and "reset" carry the current sequence, so Last-Event-ID is right even before the first change.
+        private Set<ResponseBodyEmitter.DataWithMediaType> controlEvent(String name, long sequence) {
+            return SseEmitter.event().id(epoch + ":" + sequence).name(name)
+                    .data(Map.of("sequence", sequence), MediaType.APPLICATION_JSON).build();
+        }
+    }
+
+    private class Subscriber {
+        final SseEmitter emitter;
+        RequirementFeed feed;
+        private final ArrayDeque<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean overflowed;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        synchronized void offer(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            if (closed || overflowed) {
+                return;
+            }
+            if (queue.size() >= mindMapProperties.getFeed().getSubscriberBuffer()) {
+                // Flush what is queued, then disconnect; the client reconnects with the last id it got.
+                overflowed = true;
+                overflows.increment();
+            } else {
+                queue.addLast(message);
+            }
+            if (!scheduled) {
+                scheduled = true;
+                sender.execute(this::drain);
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            queue.clear();
+        }
+
+        private void drain() {
+            for (int sent = 0; sent < DRAIN_LIMIT; sent++) {
+                Set<ResponseBodyEmitter.DataWithMediaType> next;
+                boolean complete = false;
+                synchronized (this) {
+                    next = queue.pollFirst();
+                    if (next == null) {
+                        scheduled = false;
+                        complete = overflowed && !closed;
+                    }
+                }
+                if (next == null) {
+                    if (complete) {
+                        emitter.complete();
+                    }
+                    return;
+                }
+                try {
+                    emitter.send(next);
+                } catch (IOException | IllegalStateException e) {
+                    // Client gone; the container reports the error to onError / onCompletion as well
+                    unsubscribe(this);
+                    return;
+                }
+            }
+            sender.execute(this::drain);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.mindmap.service.impl;
+
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.example.mindmap.cache.RequirementTreeCache;
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.routing.ReadYourWrites;
+import com.example.mindmap.search.NodeSearchIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind buffer for description and remarks edits, used with {@code mindmap.write-behind.enabled=true}.
+ * <p>
+ * Accepted edits are kept in memory per node, a later edit of a field replacing the earlier one, and
+ * written by one background thread as a single JDBC batch every flush interval, as soon as
+ * {@code max-pending} nodes are waiting, and on shutdown. Every accepted edit still counts as one
+ * version of its node, so clients keep using the versions they are given for optimistic locking;
+ * reads add the buffered text and versions to the stored rows.
+ * <p>
+ * Reads that combine stored rows with the buffer hold the read lock. A flush takes the write lock
+ * to pick up the buffered edits and again around its commit, so a read never sees the flushed rows
+ * while their edits are still counted as buffered. Writes that translate a client version
+ * ({@link #bufferedVersions}) only ever see too high a version in the remaining gaps, which turns
+ * into a conflict, never into a lost edit.
+ * <p>
+ * Buffered edits live in this instance only: other instances see them once flushed, the search
+ * index is updated by the flush, and a crash loses what was accepted since the last flush.
+ */
+@Component
+public class NodeEditBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(NodeEditBuffer.class);
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private RequirementChanges requirementChanges;
+
+    @Autowired
+    private RequirementTreeCache requirementTreeCache;
+
+    @Autowired
+    private NodeSearchIndex nodeSearchIndex;
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Edit> pending = new ConcurrentHashMap<>();
+    // Edits taken by the running flush until it has committed
+    private volatile Map<Long, Edit> flushing = Map.of();
+    // Per requirement with edits the stored revision does not cover yet, the sequence number of the
+    // latest one; part of the tree ETag. Dropped once a flush has written them and bumped the revision.
+    private final Map<String, Long> generations = new ConcurrentHashMap<>();
+    // Shared by all requirements, so a requirement whose entry was dropped never gets an earlier number again
+    private final AtomicLong generationSequence = new AtomicLong();
+    // Keeps generations of an earlier run of this instance from producing the same ETag again
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Object flushMonitor = new Object();
+    private ScheduledExecutorService flusher;
+    private TransactionTemplate transactionTemplate;
+    private Counter flushedRows;
+
+    @PostConstruct
+    void init() {
+        // The flush must not join a request transaction
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        Gauge.builder("mindmap.write-behind.pending", pending, Map::size)
+                .description("Nodes with description or remarks edits not written to the database yet")
+                .register(meterRegistry);
+        flushedRows = Counter.builder("mindmap.write-behind.flushed")
+                .description("Rows written by write-behind flushes")
+                .register(meterRegistry);
+        if (isEnabled()) {
+            long interval = mindMapProperties.getWriteBehind().getFlushInterval().toMillis();
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "mindmap-write-behind"));
+            flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        // Requests have stopped by now; whatever is left is written from here.
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Buffered edits of {} nodes could not be written on shutdown and are lost", pending.size(), e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return mindMapProperties.getWriteBehind().isEnabled();
+    }
+
+    /**
+     * Buffers a new value of {@code field} ("description" or "remarks") for the node and returns the
+     * node as readers will see it, or null if it does not exist. {@code expectedVersion}, when given,
+     * must match the node's version including its buffered edits.
+     */
+    public MindMapNode accept(Long nodeId, String field, String value, Integer expectedVersion) {
+        MindMapNode node;
+        lock.readLock().lock();
+        try {
+            node = mindMapNodeMapper.selectById(nodeId);
+            if (node == null) {
+                return null;
+            }
+            int stored = node.getVersion();
+            Edit edit = Edit.of(node.getRequirementId(), field, value);
+            Edit merged = pending.compute(nodeId, (id, current) -> {
+                int version = stored + versions(flushing.get(id)) + versions(current);
+                if (expectedVersion != null && expectedVersion != version) {
+                    throw new OptimisticLockingFailureException("Node " + id + " was modified concurrently (expected version "
+                            + expectedVersion + ", current " + version + ")");
+                }
+                return current != null ? current.then(edit) : edit;
+            });
+            apply(flushing.get(nodeId), node);
+            apply(merged, node);
+            // Trees cached before the edit are dropped before the ETag moves on, so a new ETag never
+            // comes with a tree that lacks the edit. Still under the lock, so a flush that takes the
+            // edit also sees its generation.
+            requirementTreeCache.invalidate(List.of(RequirementChanges.key(node.getRequirementId())));
+            generations.merge(RequirementChanges.key(node.getRequirementId()), generationSequence.incrementAndGet(), Math::max);
+        } finally {
+            lock.readLock().unlock();
+        }
+        // The flush reaches the replicas later than the primary; the writer keeps reading the primary meanwhile
+        ReadYourWrites.written(Collections.singletonList(node.getRequirementId()));
+        if (pending.size() >= mindMapProperties.getWriteBehind().getMaxPending() && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false); // shutting down; the final flush picks it up
+            }
+        }
+        return node;
+    }
+
+    /** Edits of the node accepted but not written yet; the stored version plus these is the version clients see. */
+    public int bufferedVersions(Long nodeId) {
+        if (isEmpty()) {
+            return 0;
+        }
+        lock.readLock().lock();
+        try {
+            return versions(flushing.get(nodeId)) + versions(pending.get(nodeId));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Runs a read whose rows are passed through {@link #overlay}, consistently with concurrent flushes. */
+    public <T> T read(Supplier<T> read) {
+        if (isEmpty()) {
+            return read.get();
+        }
+        lock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Applies the buffered text and versions to a row read from the database; returns the same row. */
+    public MindMapNode overlay(MindMapNode node) {
+        if (node != null && !isEmpty()) {
+            apply(flushing.get(node.getId()), node);
+            apply(pending.get(node.getId()), node);
+        }
+        return node;
+    }
+
+    /** Appended to the requirement's stored revision for the tree ETag; moves on with every accepted edit. */
+    public String revisionSuffix(String requirementId) {
+        Long generation = generations.get(RequirementChanges.key(requirementId));
+        return generation != null ? "." + instanceTag + "-" + generation : "";
+    }
+
+    private boolean isEmpty() {
+        return pending.isEmpty() && flushing.isEmpty();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("Writing buffered edits failed, retrying with the next flush", e);
+        }
+    }
+
+    /** Writes every buffered edit in one transaction; on failure the edits stay buffered. */
+    void flush() {
+        synchronized (flushMonitor) {
+            flushRequested.set(false);
+            Map<Long, Edit> batch;
+            Map<String, Long> written = new HashMap<>();
+            lock.writeLock().lock();
+            try {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = Map.copyOf(pending);
+                flushing = batch;
+                pending.clear();
+                batch.values().forEach(edit -> {
+                    String key = RequirementChanges.key(edit.requirementId);
+                    Long generation = generations.get(key);
+                    if (generation != null) {
+                        written.put(key, generation);
+                    }
+                });
+            } finally {
+                lock.writeLock().unlock();
+            }
+            transactionTemplate.executeWithoutResult(status -> write(batch, written));
+        }
+    }
+
+    private void write(Map<Long, Edit> batch, Map<String, Long> written) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                lock.writeLock().lock(); // released once the edits are no longer counted as buffered
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (!lock.isWriteLockedByCurrentThread()) {
+                    lock.writeLock().lock();
+                }
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        // Back in front of anything accepted meanwhile
+                        batch.forEach((id, edit) -> pending.merge(id, edit, (later, earlier) -> earlier.then(later)));
+                    } else {
+                        // The bumped revision covers these edits; kept if more were accepted meanwhile
+                        written.forEach(generations::remove);
+                    }
+                    flushing = Map.of();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        });
+
+        List<Map.Entry<Long, Edit>> rows = new ArrayList<>(batch.entrySet());
+        MybatisBatch.Method<MindMapNode> method = new MybatisBatch.Method<>(MindMapNodeMapper.class);
+        new MybatisBatch<>(sqlSessionFactory, rows).execute(method.get("applyBufferedEdit", row -> {
+            Edit edit = row.getValue();
+            Map<String, Object> parameters = new HashMap<>();
+            parameters.put("id", row.getKey());
+            parameters.put("description", edit.description);
+            parameters.put("descriptionSet", edit.descriptionSet);
+            parameters.put("remarks", edit.remarks);
+            parameters.put("remarksSet", edit.remarksSet);
+            parameters.put("versions", edit.versions);
+            return parameters;
+        }));
+        // Rows deleted since their edit was accepted are simply not updated.
+        Set<String> requirements = new TreeSet<>();
+        batch.values().forEach(edit -> requirements.add(RequirementChanges.key(edit.requirementId)));
+        requirements.remove(RequirementChanges.NO_REQUIREMENT);
+        requirementChanges.changed(requirements);
+        nodeSearchIndex.nodesChanged(batch.keySet());
+        flushedRows.increment(batch.size());
+    }
+
+    private static void apply(Edit edit, MindMapNode node) {
+        if (edit == null) {
+            return;
+        }
+        if (edit.descriptionSet) {
+            node.setDescription(edit.description);
+        }
+        if (edit.remarksSet) {
+            node.setRemarks(edit.remarks);
+        }
+        if (node.getVersion() != null) {
+            node.setVersion(node.getVersion() + edit.versions);
+        }
+    }
+
+    private static int versions(Edit edit) {
+        return edit != null ? edit.versions : 0;
+    }
+
+    // The accepted, not yet written edits of one node; immutable, merged by then().
+    private static final class Edit {
+        final String requirementId;
+        final String description;
+        final boolean descriptionSet;
+        final String remarks;
+        final boolean remarksSet;
+        final int versions;
+
+        Edit(String requirementId, String description, boolean descriptionSet, String remarks, boolean remarksSet, int versions) {
+            this.requirementId = requirementId;
+            this.description = description;
+            this.descriptionSet = descriptionSet;
+            this.remarks = remarks;
+            this.remarksSet = remarksSet;
+            this.versions = versions;
+        }
+
+        static Edit of(String requirementId, String field, String value) {
+            boolean description = "description".equals(field);
+            return new Edit(requirementId, description ? value : null, description, description ? null : value, !description, 1);
+        }
+
+        // This edit followed by later: each field keeps its last value
+        Edit then(Edit later) {
+            return new Edit(later.requirementId,
+                    later.descriptionSet ? later.description : description, descriptionSet || later.descriptionSet,
+                    later.remarksSet ? later.remarks : remarks, remarksSet || later.remarksSet,
+                    versions + later.versions);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.mindmap.service.impl;
+
+import com.baomidou.mybatisplus.core.batch.MybatisBatch;
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.dto.NodeImportReportDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.StatusCounts;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.util.NodePaths;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes whole trees of new nodes with a constant number of statements per chunk instead of
+ * one insert per node.
+ * <p>
+ * The input is flattened so that every parent precedes its children, the hierarchy and the
+ * status counters are computed in memory, and the rows are written level by level: a level's
+ * generated ids are the parent ids of the next one. Each chunk of a level is one JDBC batch
+ * insert plus one UPDATE completing the paths.
+ */
+@Component
+public class NodeImporter {
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    @Autowired
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Autowired
+    private StatusPropagationEngine statusPropagationEngine;
+
+    @Autowired
+    private WorkloadCounters workloadCounters;
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** One node to import; {@code parent} is the index of its parent in the flattened list, -1 for a top-level node. */
+    static class Entry {
+        final MindMapNode node;
+        final int parent;
+        final Long sourceId;
+
+        Entry(MindMapNode node, int parent, Long sourceId) {
+            this.node = node;
+            this.parent = parent;
+            this.sourceId = sourceId;
+        }
+    }
+
+    // Nested trees in pre-order; the nesting defines the hierarchy, parentId fields are ignored.
+    List<Entry> flatten(List<MindMapNodeDto> roots) {
+        List<Entry> entries = new ArrayList<>();
+        Deque<Object[]> stack = new ArrayDeque<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            stack.push(new Object[]{roots.get(i), -1});
+        }
+        while (!stack.isEmpty()) {
+            Object[] top = stack.pop();
+            MindMapNodeDto dto = (MindMapNodeDto) top[0];
+            if (dto == null) {
+                throw new IllegalArgumentException("Node cannot be null");
+            }
+            int index = entries.size();
+            entries.add(new Entry(toNode(dto), (Integer) top[1], dto.getId()));
+            checkSize(entries.size());
+            List<MindMapNodeDto> children = dto.getChildren();
+            if (children != null) {
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(new Object[]{children.get(i), index});
+                }
+            }
+        }
+        return entries;
+    }
+
+    // One flat node per record. id is the client's key for the record, parentId the key of an
+    // earlier record (or absent for a top-level node).
+    List<Entry> readNdjson(InputStream in) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Map<Long, Integer> indexBySourceId = new HashMap<>();
+        try (MappingIterator<MindMapNodeDto> records = objectMapper.readerFor(MindMapNodeDto.class).readValues(in)) {
+            while (records.hasNextValue()) {
+                MindMapNodeDto dto = records.nextValue();
+                int index = entries.size();
+                if (dto.getChildren() != null && !dto.getChildren().isEmpty()) {
+                    throw new IllegalArgumentException("Record " + index + ": NDJSON records are flat, use parentId instead of children");
+                }
+                int parent = -1;
+                if (dto.getParentId() != null) {
+                    Integer parentIndex = indexBySourceId.get(dto.getParentId());
+                    if (parentIndex == null) {
+                        throw new IllegalArgumentException("Record " + index + ": parent " + dto.getParentId() + " must appear earlier in the file");
+                    }
+                    parent = parentIndex;
+                }
+                if (dto.getId() != null && indexBySourceId.put(dto.getId(), index) != null) {
+                    throw new IllegalArgumentException("Record " + index + ": duplicate id " + dto.getId());
+                }
+                entries.add(new Entry(toNode(dto), parent, dto.getId()));
+                checkSize(entries.size());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Inserts the entries below {@code attachTo} (or as new roots when it is null) and updates the
+     * counters of {@code attachTo} and its ancestors. Must run inside a transaction.
+     */
+    NodeImportReportDto write(MindMapNode attachTo, List<Entry> entries) {
+        NodeImportReportDto report = new NodeImportReportDto();
+        if (entries.isEmpty()) {
+            return report;
+        }
+        int baseDepth = attachTo != null ? attachTo.getDepth() + 1 : 0;
+        List<List<Entry>> levels = new ArrayList<>();
+        int[] depth = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            MindMapNode node = entry.node;
+            if (!StringUtils.hasText(node.getDescription())) {
+                throw new IllegalArgumentException("Node " + i + ": description cannot be empty");
+            }
+            MindMapNode parent = entry.parent >= 0 ? entries.get(entry.parent).node : attachTo;
+            if (node.getRequirementId() == null && parent != null) {
+                node.setRequirementId(parent.getRequirementId());
+            }
+            depth[i] = entry.parent >= 0 ? depth[entry.parent] + 1 : 0;
+            node.setDepth(baseDepth + depth[i]);
+            if (levels.size() == depth[i]) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(depth[i]).add(entry);
+        }
+
+        // Children always come after their parent, so a reverse pass sees every subtree complete.
+        StatusCounts[] children = new StatusCounts[entries.size()];
+        StatusCounts[] descendants = new StatusCounts[entries.size()];
+        StatusCounts topLevel = new StatusCounts();
+        StatusCounts all = new StatusCounts();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = entries.get(i);
+            StatusCounts ownChildren = children[i] != null ? children[i] : new StatusCounts();
+            StatusCounts ownDescendants = descendants[i] != null ? descendants[i] : new StatusCounts();
+            ownChildren.writeChildrenTo(entry.node);
+            ownDescendants.writeDescendantsTo(entry.node);
+            all.add(entry.node.getStatus(), 1);
+            if (entry.parent < 0) {
+                topLevel.add(entry.node.getStatus(), 1);
+                continue;
+            }
+            int p = entry.parent;
+            if (children[p] == null) {
+                children[p] = new StatusCounts();
+                descendants[p] = new StatusCounts();
+            }
+            children[p].add(entry.node.getStatus(), 1);
+            descendants[p].add(ownDescendants).add(entry.node.getStatus(), 1);
+        }
+
+        int chunkSize = Math.max(1, mindMapProperties.getBulkImport().getChunkSize());
+        MybatisBatch.Method<MindMapNode> method = new MybatisBatch.Method<>(MindMapNodeMapper.class);
+        for (List<Entry> level : levels) {
+            for (int from = 0; from < level.size(); from += chunkSize) {
+                List<Entry> chunk = level.subList(from, Math.min(from + chunkSize, level.size()));
+                List<MindMapNode> rows = new ArrayList<>(chunk.size());
+                for (Entry entry : chunk) {
+                    MindMapNode parent = entry.parent >= 0 ? entries.get(entry.parent).node : attachTo;
+                    entry.node.setParentId(parent != null ? parent.getId() : null);
+                    // The parent's path for now; the node's own id is appended once it is generated.
+                    entry.node.setPath(parent != null ? parent.getPath() : NodePaths.ROOT);
+                    rows.add(entry.node);
+                }
+                new MybatisBatch<>(sqlSessionFactory, rows).execute(method.get("insertImported"));
+                List<Long> ids = new ArrayList<>(rows.size());
+                for (MindMapNode row : rows) {
+                    ids.add(row.getId());
+                    row.setPath(row.getPath() + row.getId() + "/");
+                }
+                mindMapNodeMapper.appendIdToPath(ids);
+            }
+        }
+
+        if (attachTo != null) {
+            statusPropagationEngine.subtreesAdded(attachTo, topLevel, all);
+        }
+        // Summed up in memory, whatever the size of the import
+        workloadCounters.nodesAdded(entries.stream().map(entry -> entry.node).collect(Collectors.toList()));
+
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.parent < 0) {
+                report.getRootIds().add(entry.node.getId());
+            }
+            report.getIdMapping().add(new NodeImportReportDto.IdMapping(i, entry.sourceId, entry.node.getId(), entry.node.getParentId()));
+        }
+        report.setImportedCount(entries.size());
+        return report;
+    }
+
+    private MindMapNode toNode(MindMapNodeDto dto) {
+        MindMapNode node = new MindMapNode();
+        node.setDescription(dto.getDescription());
+        node.setRemarks(dto.getRemarks());
+        node.setRequirementId(dto.getRequirementId());
+        node.setBackendDeveloper(dto.getBackendDeveloper());
+        node.setFrontendDeveloper(dto.getFrontendDeveloper());
+        node.setTester(dto.getTester());
+        node.setRequirementReference(dto.getRequirementReference());
+        node.setStatus(dto.getStatus() != null ? dto.getStatus() : NodeStatus.PENDING_TEST);
+        return node;
+    }
+
+    private void checkSize(int size) {
+        if (size > mindMapProperties.getBulkImport().getMaxNodes()) {
+            throw new IllegalArgumentException("Import exceeds " + mindMapProperties.getBulkImport().getMaxNodes() + " nodes");
+        }
+    }
+}
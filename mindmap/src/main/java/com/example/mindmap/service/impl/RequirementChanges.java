@@ -0,0 +1,52 @@
+package com.example.mindmap.service.impl;
+
+import com.example.mindmap.cache.RequirementTreeCache;
+import com.example.mindmap.mapper.RequirementRevisionMapper;
+import com.example.mindmap.metrics.OperationMetrics;
+import com.example.mindmap.routing.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Hook for everything derived from a requirement's nodes: the revision served as ETag, the tree
+ * cache, the per-call metrics and the writer's read-your-writes window. Every mutation reports the requirements it touched here,
+ * inside its transaction.
+ */
+@Component
+public class RequirementChanges {
+
+    // Stands in for "no requirement" where requirement ids key a ConcurrentHashMap, which takes no null keys
+    static final String NO_REQUIREMENT = "";
+
+    @Autowired
+    private RequirementRevisionMapper requirementRevisionMapper;
+
+    @Autowired
+    private RequirementTreeCache requirementTreeCache;
+
+    public void changed(Collection<String> requirementIds) {
+        // Sorted so concurrent transactions lock revision rows in the same order.
+        Set<String> ids = requirementIds.stream().filter(Objects::nonNull).collect(Collectors.toCollection(TreeSet::new));
+        if (ids.isEmpty()) {
+            return;
+        }
+        requirementRevisionMapper.bumpRevisions(ids);
+        requirementTreeCache.invalidate(ids);
+        OperationMetrics.recordRequirements(ids);
+        ReadYourWrites.written(ids);
+    }
+
+    static String key(String requirementId) {
+        return requirementId != null ? requirementId : NO_REQUIREMENT;
+    }
+
+    static String requirementId(String key) {
+        return NO_REQUIREMENT.equals(key) ? null : key;
+    }
+}
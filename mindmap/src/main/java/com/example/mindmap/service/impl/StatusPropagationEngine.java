@@ -0,0 +1,265 @@
+package com.example.mindmap.service.impl;
+
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.StatusCounts;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.metrics.OperationMetrics;
+import com.example.mindmap.util.NodePaths;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Applies status changes to whole subtrees with set-based SQL and keeps the per-node
+ * child / descendant status counters, and the per-person workload summary, in step with every
+ * structural or status change.
+ * <p>
+ * The number of statements issued per propagation is constant, no matter how deep or wide
+ * the subtree below the changed node is; recomputing ancestors costs one write per
+ * distinct ancestor. Parent status is derived from the child counters, never from a
+ * sibling scan.
+ */
+@Component
+public class StatusPropagationEngine {
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    @Autowired
+    private WorkloadCounters workloadCounters;
+
+    public Propagation begin() {
+        return new Propagation();
+    }
+
+    /**
+     * Accumulates status changes of one operation and recomputes the affected ancestors once
+     * at the end.
+     */
+    public class Propagation {
+
+        // Counter deltas not yet written, per ancestor id
+        private final Map<Long, Delta> pending = new HashMap<>();
+        private final List<MindMapNode> touched = new ArrayList<>();
+        private final List<String> forcedPaths = new ArrayList<>();
+
+        /**
+         * Sets {@code root} and every descendant to {@code status} with one path-range UPDATE.
+         * {@code root} must carry the path, status and descendant counters it had before the call;
+         * its own row must already be written and reported to {@link WorkloadCounters}.
+         */
+        public void setSubtreeStatus(MindMapNode root, NodeStatus status) {
+            touched.add(root);
+            for (String forced : forcedPaths) {
+                if (root.getPath().startsWith(forced)) {
+                    return; // already covered by an enclosing subtree set earlier in this operation
+                }
+            }
+            StatusCounts before = StatusCounts.descendantsOf(root).add(root.getStatus(), 1);
+            if (before.total() > 1) {
+                // Descendants only: the caller has written and reported root's own row already
+                workloadCounters.subtreeStatusChanging(root.getPath(), status);
+            }
+            int rows = mindMapNodeMapper.updateSubtreeStatus(root.getPath(), status);
+            OperationMetrics.recordPropagation(0, rows);
+            forcedPaths.add(root.getPath());
+
+            StatusCounts subtreeDelta = before.negate().add(status, before.total());
+            StatusCounts parentDelta = StatusCounts.of(root.getStatus(), -1).add(status, 1);
+            record(root, parentDelta, subtreeDelta);
+        }
+
+        /**
+         * Moves {@code root}'s subtree out of its old ancestors' counters and into those of {@code moved},
+         * the same node with its new parent id and path. Ancestors on both chains are recomputed by
+         * {@link #finish()}; deltas of ancestors the chains share cancel out.
+         */
+        public void move(MindMapNode root, MindMapNode moved) {
+            StatusCounts subtree = StatusCounts.descendantsOf(root).add(root.getStatus(), 1);
+            record(root, StatusCounts.of(root.getStatus(), -1), subtree.negate());
+            record(moved, StatusCounts.of(root.getStatus(), 1), subtree);
+            touched.add(root);
+            touched.add(moved);
+        }
+
+        /** Marks a node whose ancestors must be recomputed even though its own status did not change. */
+        public void touch(MindMapNode node) {
+            touched.add(node);
+        }
+
+        /**
+         * Writes the accumulated counter deltas and recomputes every ancestor of the touched nodes
+         * exactly once, deepest first. An ancestor becomes X when all of its children are X,
+         * otherwise PENDING_TEST.
+         *
+         * @return ancestors whose status changed, keyed by id, with their new status applied
+         */
+        public Map<Long, MindMapNode> finish() {
+            Map<Long, MindMapNode> ancestors = loadAncestors(touched);
+            OperationMetrics.recordPropagation(
+                    (int) ancestors.values().stream().map(MindMapNode::getDepth).distinct().count(), 0);
+            if (ancestors.isEmpty()) {
+                return Map.of();
+            }
+            List<MindMapNode> bottomUp = new ArrayList<>(ancestors.values());
+            bottomUp.sort(Comparator.comparing(MindMapNode::getDepth).reversed());
+
+            Map<Long, MindMapNode> changed = new LinkedHashMap<>();
+            for (MindMapNode ancestor : bottomUp) {
+                Delta delta = pending.getOrDefault(ancestor.getId(), new Delta());
+                StatusCounts children = StatusCounts.childrenOf(ancestor).add(delta.child);
+                NodeStatus derived = children.uniformStatus();
+                if (derived == null) {
+                    derived = children.total() == 0 ? ancestor.getStatus() : NodeStatus.PENDING_TEST;
+                }
+                if (derived != ancestor.getStatus()) {
+                    // Shallower ancestors are processed later and pick this change up from pending.
+                    StatusCounts statusDelta = StatusCounts.of(ancestor.getStatus(), -1).add(derived, 1);
+                    record(ancestor, statusDelta, statusDelta);
+                    workloadCounters.statusChanged(ancestor, ancestor.getStatus(), derived);
+                    ancestor.setStatus(derived);
+                    changed.put(ancestor.getId(), ancestor);
+                }
+                boolean statusChanged = changed.containsKey(ancestor.getId());
+                if (statusChanged || !delta.isZero()) {
+                    // Increments rather than absolute values, so concurrent writers on other branches are not lost.
+                    mindMapNodeMapper.adjustCounters(List.of(ancestor.getId()), delta.child, delta.desc,
+                            statusChanged ? derived : null);
+                }
+            }
+            return changed;
+        }
+
+        // Queues a change of node's subtree for its ancestors: the parent's child counters and every ancestor's descendant counters.
+        private void record(MindMapNode node, StatusCounts parentChildDelta, StatusCounts descendantDelta) {
+            if (node.getParentId() == null) {
+                return;
+            }
+            pending.computeIfAbsent(node.getParentId(), id -> new Delta()).child.add(parentChildDelta);
+            for (Long ancestorId : NodePaths.ancestorIds(node.getPath())) {
+                pending.computeIfAbsent(ancestorId, id -> new Delta()).desc.add(descendantDelta);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the counters and derived status of every ancestor of the given paths from the current
+     * rows of their children, deepest first. Used by asynchronous propagation, where node statuses
+     * were committed before they were counted: absolute values do not depend on what the counters
+     * held before, so concurrent direct updates converge once their own propagation runs.
+     *
+     * @return ancestors whose status changed, keyed by id, with their new status applied
+     */
+    public Map<Long, MindMapNode> recountAncestors(Collection<String> paths) {
+        List<Long> ancestorIds = paths.stream()
+                .flatMap(path -> NodePaths.ancestorIds(path).stream())
+                .distinct()
+                .collect(Collectors.toList());
+        if (ancestorIds.isEmpty()) {
+            return Map.of();
+        }
+        // Locking reads: a concurrent recount of the same ancestors waits, then sees the committed children.
+        List<MindMapNode> bottomUp = mindMapNodeMapper.selectHierarchyByIds(ancestorIds, true);
+        bottomUp.sort(Comparator.comparing(MindMapNode::getDepth).reversed());
+        OperationMetrics.recordPropagation(
+                (int) bottomUp.stream().map(MindMapNode::getDepth).distinct().count(), 0);
+
+        Map<Long, MindMapNode> changed = new LinkedHashMap<>();
+        for (MindMapNode ancestor : bottomUp) {
+            StatusCounts children = new StatusCounts();
+            StatusCounts descendants = new StatusCounts();
+            for (MindMapNode child : mindMapNodeMapper.selectChildStatusesForUpdate(ancestor.getId())) {
+                children.add(child.getStatus(), 1);
+                descendants.add(child.getStatus(), 1).add(StatusCounts.descendantsOf(child));
+            }
+            NodeStatus derived = children.uniformStatus();
+            if (derived == null) {
+                derived = children.total() == 0 ? ancestor.getStatus() : NodeStatus.PENDING_TEST;
+            }
+            boolean statusChanged = derived != ancestor.getStatus();
+            mindMapNodeMapper.setCounters(ancestor.getId(), children, descendants, statusChanged ? derived : null);
+            if (statusChanged) {
+                workloadCounters.statusChanged(ancestor, ancestor.getStatus(), derived);
+                ancestor.setStatus(derived);
+                changed.put(ancestor.getId(), ancestor);
+            }
+        }
+        return changed;
+    }
+
+    /** Counts a newly inserted leaf in its ancestors' counters. Ancestor status is left as is. */
+    public void nodeAdded(MindMapNode node) {
+        workloadCounters.nodesAdded(List.of(node));
+        adjustChain(node, StatusCounts.of(node.getStatus(), 1), StatusCounts.of(node.getStatus(), 1));
+    }
+
+    /**
+     * Counts subtrees inserted below {@code parent}: {@code children} are the statuses of the new direct
+     * children, {@code nodes} those of every inserted node. Ancestor status is left as is.
+     */
+    public void subtreesAdded(MindMapNode parent, StatusCounts children, StatusCounts nodes) {
+        mindMapNodeMapper.adjustCounters(List.of(parent.getId()), children, nodes, null);
+        List<Long> ancestorIds = NodePaths.ancestorIds(parent.getPath());
+        if (!ancestorIds.isEmpty()) {
+            mindMapNodeMapper.adjustCounters(ancestorIds, new StatusCounts(), nodes, null);
+        }
+    }
+
+    /** Removes {@code root} and all of its descendants from its ancestors' counters, before the rows are deleted. */
+    public void subtreeRemoved(MindMapNode root) {
+        StatusCounts subtree = StatusCounts.descendantsOf(root).add(root.getStatus(), 1);
+        workloadCounters.subtreeRemoving(root.getPath());
+        adjustChain(root, StatusCounts.of(root.getStatus(), -1), subtree.negate());
+    }
+
+    /** A node is deleted and its children move up to its parent. */
+    public void nodeRemovedKeepingChildren(MindMapNode node) {
+        workloadCounters.nodeRemoved(node);
+        StatusCounts parentChildren = StatusCounts.of(node.getStatus(), -1).add(StatusCounts.childrenOf(node));
+        adjustChain(node, parentChildren, StatusCounts.of(node.getStatus(), -1));
+    }
+
+    // Two statements whatever the depth: descendant deltas on the whole ancestor chain, child deltas on the parent.
+    private void adjustChain(MindMapNode node, StatusCounts parentChildDelta, StatusCounts descendantDelta) {
+        if (node.getParentId() == null) {
+            return;
+        }
+        List<Long> ancestorIds = NodePaths.ancestorIds(node.getPath());
+        if (!descendantDelta.isZero() && !ancestorIds.isEmpty()) {
+            mindMapNodeMapper.adjustCounters(ancestorIds, new StatusCounts(), descendantDelta, null);
+        }
+        if (!parentChildDelta.isZero()) {
+            mindMapNodeMapper.adjustCounters(List.of(node.getParentId()), parentChildDelta, new StatusCounts(), null);
+        }
+    }
+
+    private Map<Long, MindMapNode> loadAncestors(Collection<MindMapNode> nodes) {
+        List<Long> ancestorIds = nodes.stream()
+                .flatMap(node -> NodePaths.ancestorIds(node.getPath()).stream())
+                .distinct()
+                .collect(Collectors.toList());
+        if (ancestorIds.isEmpty()) {
+            return Map.of();
+        }
+        return mindMapNodeMapper.selectHierarchyByIds(ancestorIds, false).stream()
+                .collect(Collectors.toMap(MindMapNode::getId, node -> node));
+    }
+
+    private static class Delta {
+        final StatusCounts child = new StatusCounts();
+        final StatusCounts desc = new StatusCounts();
+
+        boolean isZero() {
+            return child.isZero() && desc.isZero();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.mindmap.service.impl;
+
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.StatusCounts;
+import com.example.mindmap.entity.WorkloadRole;
+import com.example.mindmap.mapper.MindMapNodeMapper;
+import com.example.mindmap.mapper.WorkloadMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Keeps {@code workload_summary}, the number of nodes per status of every person in every role and
+ * requirement, in step with node changes, so that workload reports read one row per person instead
+ * of counting nodes.
+ * <p>
+ * Whoever writes a node's status, requirement or existence reports it here: single rows from the
+ * node they already hold, subtrees with one locking read of the range right before the set-based
+ * statement, so the deltas describe exactly the rows that statement changes. The deltas of a transaction are summed up and written with one upsert just before it
+ * commits, in key order so that concurrent transactions lock summary rows in the same order.
+ * Nodes without a requirement and unassigned roles are not counted.
+ */
+@Component
+public class WorkloadCounters {
+
+    private static final Comparator<PersonWorkload> KEY_ORDER = Comparator
+            .comparing(PersonWorkload::getRequirementId)
+            .thenComparing(PersonWorkload::getRole)
+            .thenComparing(PersonWorkload::getPerson);
+    // Rows per upsert statement
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private WorkloadMapper workloadMapper;
+
+    @Autowired
+    private MindMapNodeMapper mindMapNodeMapper;
+
+    /** Counts new nodes, each in its own status. */
+    public void nodesAdded(Collection<MindMapNode> nodes) {
+        record(deltas -> nodes.forEach(node -> add(deltas, node, node.getStatus(), 1)));
+    }
+
+    /** Uncounts a deleted node; {@code node} must carry its status and assignees. */
+    public void nodeRemoved(MindMapNode node) {
+        record(deltas -> add(deltas, node, node.getStatus(), -1));
+    }
+
+    /** A single row's status was set from {@code from} to {@code to}; {@code node} must carry its assignees. */
+    public void statusChanged(MindMapNode node, NodeStatus from, NodeStatus to) {
+        if (from == to) {
+            return;
+        }
+        record(deltas -> {
+            add(deltas, node, from, -1);
+            add(deltas, node, to, 1);
+        });
+    }
+
+    /** The subtree under {@code rootPath} is about to be set to {@code status}; rows already in it do not change. */
+    public void subtreeStatusChanging(String rootPath, NodeStatus status) {
+        List<MindMapNode> nodes = mindMapNodeMapper.selectAssignmentsForUpdate(rootPath, status);
+        record(deltas -> nodes.forEach(node -> {
+            add(deltas, node, node.getStatus(), -1);
+            add(deltas, node, status, 1);
+        }));
+    }
+
+    /** The subtree under {@code rootPath} is about to be deleted. */
+    public void subtreeRemoving(String rootPath) {
+        List<MindMapNode> nodes = mindMapNodeMapper.selectAssignmentsForUpdate(rootPath, null);
+        record(deltas -> nodes.forEach(node -> add(deltas, node, node.getStatus(), -1)));
+    }
+
+    /** The subtree under {@code rootPath} is about to be re-homed in {@code requirementId}. */
+    public void subtreeMoving(String rootPath, String requirementId) {
+        List<MindMapNode> nodes = mindMapNodeMapper.selectAssignmentsForUpdate(rootPath, null);
+        record(deltas -> nodes.forEach(node -> {
+            add(deltas, node, node.getStatus(), -1);
+            add(deltas, requirementId, node, node.getStatus(), 1);
+        }));
+    }
+
+    // Sums the change into the current transaction's deltas, or writes it at once outside a transaction.
+    private void record(Consumer<Map<PersonWorkload, StatusCounts>> change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<PersonWorkload, StatusCounts> deltas = new TreeMap<>(KEY_ORDER);
+            change.accept(deltas);
+            write(deltas);
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Map<PersonWorkload, StatusCounts> deltas = (Map<PersonWorkload, StatusCounts>) TransactionSynchronizationManager.getResource(this);
+        if (deltas == null) {
+            Map<PersonWorkload, StatusCounts> pending = new TreeMap<>(KEY_ORDER);
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    write(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(WorkloadCounters.this);
+                }
+            });
+            deltas = pending;
+        }
+        change.accept(deltas);
+    }
+
+    private void write(Map<PersonWorkload, StatusCounts> deltas) {
+        List<PersonWorkload> rows = new ArrayList<>();
+        deltas.forEach((key, counts) -> {
+            if (!counts.isZero()) {
+                PersonWorkload row = new PersonWorkload();
+                row.setRequirementId(key.getRequirementId());
+                row.setRole(key.getRole());
+                row.setPerson(key.getPerson());
+                row.setPending(counts.getPending());
+                row.setTested(counts.getTested());
+                row.setCancelled(counts.getCancelled());
+                rows.add(row);
+            }
+        });
+        deltas.clear();
+        for (int from = 0; from < rows.size(); from += CHUNK_SIZE) {
+            workloadMapper.applyDeltas(rows.subList(from, Math.min(from + CHUNK_SIZE, rows.size())));
+        }
+    }
+
+    private static void add(Map<PersonWorkload, StatusCounts> deltas, MindMapNode node, NodeStatus status, int count) {
+        add(deltas, node.getRequirementId(), node, status, count);
+    }
+
+    private static void add(Map<PersonWorkload, StatusCounts> deltas, String requirementId, MindMapNode assignees,
+                            NodeStatus status, int count) {
+        for (WorkloadRole role : WorkloadRole.values()) {
+            add(deltas, requirementId, role,
+                    role.personOf(assignees.getTester(), assignees.getBackendDeveloper(), assignees.getFrontendDeveloper()), status, count);
+        }
+    }
+
+    private static void add(Map<PersonWorkload, StatusCounts> deltas, String requirementId, WorkloadRole role,
+                            String person, NodeStatus status, int count) {
+        if (requirementId == null || person == null || person.isEmpty() || status == null || count == 0) {
+            return;
+        }
+        PersonWorkload key = new PersonWorkload();
+        key.setRequirementId(requirementId);
+        key.setRole(role);
+        key.setPerson(person);
+        deltas.computeIfAbsent(key, k -> new StatusCounts()).add(status, count);
+    }
+}
@@ -0,0 +1,349 @@
+package com.example.mindmap.tree;
+
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.util.LongIntIndex;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable tree of one requirement in columnar form: one slot per node holding its id, parent id,
+ * status ordinal and text columns, and int links to its parent, first child and next sibling
+ * (roots are linked as siblings of each other). Parents are found through the id column itself
+ * when the rows come in id order, otherwise through a {@link LongIntIndex}. Developer and tester
+ * columns are indexes into a dictionary of the tree's names, and the requirement id is held once.
+ * <p>
+ * Serializes to the same JSON as a list of {@link MindMapNodeDto} by walking the links, so the tree
+ * endpoint writes its response without creating DTOs; {@link #toDtos()} builds them for callers
+ * that need objects. {@link #flat} is the same tree as parallel arrays ({@link #FLAT_MEDIA_TYPE}).
+ * Built by {@link TreeAssembler}.
+ */
+public final class MindMapTree implements JsonSerializable {
+
+    public static final MindMapTree EMPTY = new MindMapTree(List.of(), false);
+
+    /** Media type of the flat form: parallel arrays in pre-order instead of nested objects. */
+    public static final String FLAT_MEDIA_TYPE = "application/vnd.mindmap.tree+json";
+
+    /** Rich-text columns of the flat form; only the requested ones are written. */
+    public enum TextColumn {
+        DESCRIPTION("description"),
+        REMARKS("remarks"),
+        REQUIREMENT_REFERENCE("requirementReference");
+
+        private final String field;
+
+        TextColumn(String field) {
+            this.field = field;
+        }
+
+        public static TextColumn of(String field) {
+            for (TextColumn column : values()) {
+                if (column.field.equals(field)) {
+                    return column;
+                }
+            }
+            throw new IllegalArgumentException("Unknown text column " + field + ", expected description, remarks or requirementReference");
+        }
+    }
+
+    private static final NodeStatus[] STATUSES = NodeStatus.values();
+    private static final long NO_PARENT = Long.MIN_VALUE;
+    private static final int NONE = -1;
+
+    private final String requirementId;
+    private final long[] ids;
+    private final long[] parentIds;
+    private final byte[] statuses;
+    private final String[] descriptions;
+    private final String[] remarks;
+    // Indexes into names, NONE for null
+    private final int[] backendDevelopers;
+    private final int[] frontendDevelopers;
+    private final int[] testers;
+    private final String[] names;
+    private final String[] requirementReferences;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int firstRoot;
+
+    // What assembly left out, reported by TreeAssembler
+    final int orphans;
+    final long sampleOrphan;
+    final int unreachable;
+
+    // Rows of one requirement; with dropOrphans, rows whose parent is not among them are left out
+    // with their subtrees, otherwise they become roots.
+    MindMapTree(List<MindMapNode> rows, boolean dropOrphans) {
+        int size = rows.size();
+        requirementId = size > 0 ? rows.get(0).getRequirementId() : null;
+        ids = new long[size];
+        parentIds = new long[size];
+        statuses = new byte[size];
+        descriptions = new String[size];
+        remarks = new String[size];
+        backendDevelopers = new int[size];
+        frontendDevelopers = new int[size];
+        testers = new int[size];
+        requirementReferences = new String[size];
+        parents = new int[size];
+        firstChildren = new int[size];
+        nextSiblings = new int[size];
+        Arrays.fill(firstChildren, NONE);
+
+        Map<String, Integer> nameIndex = new HashMap<>();
+        boolean ascending = true;
+        for (int i = 0; i < size; i++) {
+            MindMapNode row = rows.get(i);
+            ids[i] = row.getId();
+            parentIds[i] = row.getParentId() != null ? row.getParentId() : NO_PARENT;
+            statuses[i] = row.getStatus() != null ? (byte) row.getStatus().ordinal() : NONE;
+            descriptions[i] = row.getDescription();
+            remarks[i] = row.getRemarks();
+            backendDevelopers[i] = nameIndex(nameIndex, row.getBackendDeveloper());
+            frontendDevelopers[i] = nameIndex(nameIndex, row.getFrontendDeveloper());
+            testers[i] = nameIndex(nameIndex, row.getTester());
+            requirementReferences[i] = row.getRequirementReference();
+            ascending &= i == 0 || ids[i] > ids[i - 1];
+        }
+        names = new String[nameIndex.size()];
+        nameIndex.forEach((name, index) -> names[index] = name);
+        // Rows in id order (as loaded) are looked up by binary search over ids itself, anything else by a hash index.
+        LongIntIndex slotOf = null;
+        if (!ascending) {
+            slotOf = new LongIntIndex(size);
+            for (int i = 0; i < size; i++) {
+                slotOf.put(ids[i], i);
+            }
+        }
+
+        // Backwards, because every link is prepended: siblings keep the order of the rows.
+        int root = NONE;
+        int orphanCount = 0;
+        long orphan = NO_PARENT;
+        int linked = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            int parent = parentIds[i] == NO_PARENT ? NONE
+                    : slotOf != null ? slotOf.get(parentIds[i]) : Math.max(NONE, Arrays.binarySearch(ids, parentIds[i]));
+            if (parentIds[i] != NO_PARENT && parent == NONE) {
+                orphanCount++;
+                orphan = ids[i];
+                if (dropOrphans) {
+                    parents[i] = NONE;
+                    nextSiblings[i] = NONE;
+                    continue;
+                }
+            }
+            parents[i] = parent;
+            if (parent == NONE) {
+                nextSiblings[i] = root;
+                root = i;
+            } else {
+                nextSiblings[i] = firstChildren[parent];
+                firstChildren[parent] = i;
+            }
+            linked++;
+        }
+        firstRoot = root;
+        orphans = orphanCount;
+        sampleOrphan = orphan;
+
+        int reached = 0;
+        for (int i = firstRoot; i != NONE; i = next(i)) {
+            reached++;
+        }
+        unreachable = linked - reached;
+    }
+
+    public boolean isEmpty() {
+        return firstRoot == NONE;
+    }
+
+    /** The nested DTOs; leaves get List.of() as children. */
+    public List<MindMapNodeDto> toDtos() {
+        List<MindMapNodeDto> roots = new ArrayList<>();
+        MindMapNodeDto[] dtos = new MindMapNodeDto[ids.length];
+        // Pre-order: every parent is created before its children
+        for (int i = firstRoot; i != NONE; i = next(i)) {
+            dtos[i] = new MindMapNodeDto(ids[i], parentIds[i] != NO_PARENT ? parentIds[i] : null,
+                    descriptions[i], remarks[i], requirementId, name(backendDevelopers[i]), name(frontendDevelopers[i]),
+                    name(testers[i]), requirementReferences[i], status(i),
+                    firstChildren[i] != NONE ? new ArrayList<>() : List.of());
+            (parents[i] != NONE ? dtos[parents[i]].getChildren() : roots).add(dtos[i]);
+        }
+        return roots;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+        generator.writeStartArray();
+        int i = firstRoot;
+        while (i != NONE) {
+            writeStart(generator, i);
+            if (firstChildren[i] != NONE) {
+                i = firstChildren[i];
+                continue;
+            }
+            writeEnd(generator);
+            // Close every ancestor this node was the last descendant of
+            while (nextSiblings[i] == NONE && (i = parents[i]) != NONE) {
+                writeEnd(generator);
+            }
+            if (i != NONE) {
+                i = nextSiblings[i];
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(generator, serializers);
+    }
+
+    /**
+     * The flat form: nodes in pre-order as parallel arrays, each parent before its children.
+     * {@code parents} holds the array position of the parent (-1 for roots), {@code status} an
+     * index into {@code statuses}, and the developer and tester columns an index into
+     * {@code names} (-1 for none). Only the given rich-text columns are included.
+     */
+    public JsonSerializable flat(Set<TextColumn> textColumns) {
+        return new JsonSerializable() {
+            @Override
+            public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+                writeFlat(generator, textColumns);
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+                writeFlat(generator, textColumns);
+            }
+        };
+    }
+
+    private void writeFlat(JsonGenerator generator, Set<TextColumn> textColumns) throws IOException {
+        int[] order = new int[ids.length];
+        int[] position = new int[ids.length];
+        int count = 0;
+        for (int i = firstRoot; i != NONE; i = next(i)) {
+            position[i] = count;
+            order[count++] = i;
+        }
+        generator.writeStartObject();
+        generator.writeStringField("requirementId", requirementId);
+        generator.writeArrayFieldStart("ids");
+        for (int k = 0; k < count; k++) {
+            generator.writeNumber(ids[order[k]]);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("parents");
+        for (int k = 0; k < count; k++) {
+            int parent = parents[order[k]];
+            generator.writeNumber(parent != NONE ? position[parent] : NONE);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("statuses");
+        for (NodeStatus status : STATUSES) {
+            generator.writeString(status.name());
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("status");
+        for (int k = 0; k < count; k++) {
+            generator.writeNumber(statuses[order[k]]);
+        }
+        generator.writeEndArray();
+        generator.writeArrayFieldStart("names");
+        for (String name : names) {
+            generator.writeString(name);
+        }
+        generator.writeEndArray();
+        writeIndexes(generator, "backendDeveloper", backendDevelopers, order, count);
+        writeIndexes(generator, "frontendDeveloper", frontendDevelopers, order, count);
+        writeIndexes(generator, "tester", testers, order, count);
+        for (TextColumn column : TextColumn.values()) {
+            if (!textColumns.contains(column)) {
+                continue;
+            }
+            String[] values = column == TextColumn.DESCRIPTION ? descriptions
+                    : column == TextColumn.REMARKS ? remarks : requirementReferences;
+            generator.writeArrayFieldStart(column.field);
+            for (int k = 0; k < count; k++) {
+                generator.writeString(values[order[k]]);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    private static void writeIndexes(JsonGenerator generator, String field, int[] column, int[] order, int count) throws IOException {
+        generator.writeArrayFieldStart(field);
+        for (int k = 0; k < count; k++) {
+            generator.writeNumber(column[order[k]]);
+        }
+        generator.writeEndArray();
+    }
+
+    // Pre-order walk over the nodes below the roots, starting at firstRoot
+    private int next(int i) {
+        if (firstChildren[i] != NONE) {
+            return firstChildren[i];
+        }
+        while (nextSiblings[i] == NONE) {
+            i = parents[i];
+            if (i == NONE) {
+                return NONE;
+            }
+        }
+        return nextSiblings[i];
+    }
+
+    // A node in MindMapNodeDto field order, leaving its "children" array open
+    private void writeStart(JsonGenerator generator, int i) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", ids[i]);
+        if (parentIds[i] != NO_PARENT) {
+            generator.writeNumberField("parentId", parentIds[i]);
+        } else {
+            generator.writeNullField("parentId");
+        }
+        generator.writeStringField("description", descriptions[i]);
+        generator.writeStringField("remarks", remarks[i]);
+        generator.writeStringField("requirementId", requirementId);
+        generator.writeStringField("backendDeveloper", name(backendDevelopers[i]));
+        generator.writeStringField("frontendDeveloper", name(frontendDevelopers[i]));
+        generator.writeStringField("tester", name(testers[i]));
+        generator.writeStringField("requirementReference", requirementReferences[i]);
+        NodeStatus status = status(i);
+        generator.writeStringField("status", status != null ? status.name() : null);
+        generator.writeArrayFieldStart("children");
+    }
+
+    private static void writeEnd(JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    private NodeStatus status(int i) {
+        return statuses[i] != NONE ? STATUSES[statuses[i]] : null;
+    }
+
+    private String name(int index) {
+        return index != NONE ? names[index] : null;
+    }
+
+    private static int nameIndex(Map<String, Integer> nameIndex, String name) {
+        return name != null ? nameIndex.computeIfAbsent(name, n -> nameIndex.size()) : NONE;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.mindmap.tree;
+
+import com.example.mindmap.config.MindMapProperties;
+import com.example.mindmap.entity.MindMapNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Builds the {@link MindMapTree} of one requirement from its flat rows.
+ * <p>
+ * An orphan is a row whose parent is not among the rows, e.g. because the parent belongs to
+ * another requirement. Orphans are left out with their subtrees or shown as roots (keeping their
+ * parentId) according to {@code mindmap.tree.orphans}; either way they are logged and counted in
+ * {@code mindmap.tree.orphans}. Rows that cannot be reached from any root for another reason
+ * (below a dropped orphan, or a parent cycle) are logged as well. Code that places rows itself
+ * instead of assembling a tree, like the streamed export, follows the same policy through
+ * {@link #dropsOrphans()} and reports what it found with {@link #report(String, RowTally)}.
+ */
+@Component
+public class TreeAssembler {
+
+    private static final Logger log = LoggerFactory.getLogger(TreeAssembler.class);
+
+    @Autowired
+    private MindMapProperties mindMapProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Counter orphanRows;
+
+    @PostConstruct
+    void init() {
+        orphanRows = Counter.builder("mindmap.tree.orphans")
+                .description("Rows of assembled or exported requirement trees whose parent is not in the requirement")
+                .register(meterRegistry);
+    }
+
+    public MindMapTree assemble(String requirementId, List<MindMapNode> rows) {
+        if (rows.isEmpty()) {
+            return MindMapTree.EMPTY;
+        }
+        MindMapTree tree = new MindMapTree(rows, dropsOrphans());
+        report(requirementId, rows.size(), tree.orphans, tree.sampleOrphan, tree.unreachable);
+        return tree;
+    }
+
+    public boolean dropsOrphans() {
+        return mindMapProperties.getTree().getOrphans() == MindMapProperties.OrphanPolicy.DROP;
+    }
+
+    public void report(String requirementId, RowTally tally) {
+        report(requirementId, tally.rows, tally.orphans, tally.sampleOrphan, tally.unreachable);
+    }
+
+    private void report(String requirementId, int rows, int orphans, long sampleOrphan, int unreachable) {
+        if (orphans > 0) {
+            orphanRows.increment(orphans);
+            log.warn("Requirement {}: {} of {} nodes have a parent outside the requirement (e.g. node {}), {}",
+                    requirementId, orphans, rows, sampleOrphan, dropsOrphans() ? "left out of the tree" : "shown as roots");
+        }
+        if (unreachable > 0) {
+            log.warn("Requirement {}: {} further nodes are not below any root (below a dropped orphan, or a parent cycle), left out of the tree",
+                    requirementId, unreachable);
+        }
+    }
+
+    /**
+     * What a caller placing rows one by one found, for {@link #report(String, RowTally)}.
+     */
+    public static class RowTally {
+        private int rows;
+        private int orphans;
+        private long sampleOrphan;
+        private int unreachable;
+
+        public void row() {
+            rows++;
+        }
+
+        public void orphan(long id) {
+            orphans++;
+            sampleOrphan = id;
+        }
+
+        public void unreachable() {
+            unreachable++;
+        }
+    }
+}
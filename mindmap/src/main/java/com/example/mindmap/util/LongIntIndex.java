@@ -0,0 +1,47 @@
+package com.example.mindmap.util;
+
+/**
+ * Map from long keys to non-negative int values without boxing, sized once for a known number of
+ * keys: open addressing with linear probing over two parallel arrays, kept at most half full.
+ */
+public final class LongIntIndex {
+
+    private final long[] keys;
+    // value + 1; 0 marks a free slot
+    private final int[] values;
+    private final int mask;
+
+    public LongIntIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public void put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must not be negative: " + value);
+        }
+        int slot = slot(key);
+        while (values[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value + 1;
+    }
+
+    /** The value stored for key, or -1 if there is none. */
+    public int get(long key) {
+        for (int slot = slot(key); values[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads sequential ids over the whole table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
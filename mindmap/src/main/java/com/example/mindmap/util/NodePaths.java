@@ -0,0 +1,42 @@
+package com.example.mindmap.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for the materialized hierarchy path stored in {@code mind_map_node.path}.
+ * <p>
+ * A path lists the ids from the root down to the node itself, each followed by a slash,
+ * e.g. {@code /100/102/201/}. Every descendant's path starts with its ancestor's path,
+ * so a whole subtree is the index range {@code path LIKE '/100/102/%'}.
+ */
+public final class NodePaths {
+
+    // Prefix shared by every root node's path
+    public static final String ROOT = "/";
+
+    private NodePaths() {
+    }
+
+    public static String childPath(String parentPath, Long id) {
+        return (parentPath == null ? ROOT : parentPath) + id + "/";
+    }
+
+    // Ids of every ancestor of the node a path points to, root first; the node itself is excluded.
+    public static List<Long> ancestorIds(String path) {
+        List<Long> ids = new ArrayList<>();
+        if (path == null) {
+            return ids;
+        }
+        int start = 1;
+        int end;
+        while ((end = path.indexOf('/', start)) > 0) {
+            ids.add(Long.parseLong(path.substring(start, end)));
+            start = end + 1;
+        }
+        if (!ids.isEmpty()) {
+            ids.remove(ids.size() - 1);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.mindmap.migration;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.resource.ClassLoaderResourceAccessor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The backfill changesets rewrite every existing row of a production database. Here the changelog
+ * stops after the original table (changeset 1), rows are seeded the way the application stored them
+ * before, and the remaining changesets run over them: several roots, a multi-level tree and a
+ * parent_id cycle that no root reaches.
+ */
+class BackfillChangesTest {
+
+    private static final String CHANGELOG = "db/changelog/db.changelog-master.yaml";
+    // Leaves out the sample nodes of changeset 2
+    private static final Contexts CONTEXTS = new Contexts("backfill-test");
+
+    private Connection connection;
+    private Liquibase liquibase;
+    private final Map<String, Long> ids = new HashMap<>();
+
+    @BeforeEach
+    void createBaseline() throws Exception {
+        // Upper-case names, as Liquibase looks them up: with DATABASE_TO_LOWER the second update
+        // no longer finds the databasechangelog table the first one created
+        connection = DriverManager.getConnection("jdbc:h2:mem:backfill-" + System.nanoTime() + ";MODE=MySQL", "sa", "");
+        Database database = DatabaseFactory.getInstance().findCorrectDatabaseImplementation(new JdbcConnection(connection));
+        liquibase = new Liquibase(CHANGELOG, new ClassLoaderResourceAccessor(), database);
+        liquibase.update(1, CONTEXTS, new LabelExpression());
+
+        // root-a
+        //   a1
+        //     a11, a12 (cancelled)
+        //   a2 (tested)
+        // root-b
+        // root-c (tested)
+        //   c1 (tested)
+        // cycle-1 <-> cycle-2, cycle-3 below cycle-1
+        insert("root-a", null, "PENDING_TEST");
+        insert("a1", "root-a", "PENDING_TEST");
+        insert("a11", "a1", "TESTED");
+        insert("a12", "a1", "CANCELLED");
+        insert("a2", "root-a", "TESTED");
+        insert("root-b", null, "PENDING_TEST");
+        insert("root-c", null, "TESTED");
+        insert("c1", "root-c", "TESTED");
+        insert("cycle-1", null, "PENDING_TEST");
+        insert("cycle-2", "cycle-1", "TESTED");
+        insert("cycle-3", "cycle-1", "CANCELLED");
+        try (PreparedStatement close = connection.prepareStatement("UPDATE mind_map_node SET parent_id = ? WHERE id = ?")) {
+            close.setLong(1, ids.get("cycle-2"));
+            close.setLong(2, ids.get("cycle-1"));
+            close.executeUpdate();
+        }
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        liquibase.close();
+    }
+
+    @Test
+    void pathsAndDepthsFollowTheParents() throws Exception {
+        liquibase.update(CONTEXTS, new LabelExpression());
+
+        assertThat(path("root-a")).isEqualTo(path(null, "root-a"));
+        assertThat(path("a1")).isEqualTo(path("root-a", "a1"));
+        assertThat(path("a11")).isEqualTo(path("a1", "a11"));
+        assertThat(path("a12")).isEqualTo(path("a1", "a12"));
+        assertThat(path("a2")).isEqualTo(path("root-a", "a2"));
+        assertThat(path("root-b")).isEqualTo(path(null, "root-b"));
+        assertThat(path("root-c")).isEqualTo(path(null, "root-c"));
+        assertThat(path("c1")).isEqualTo(path("root-c", "c1"));
+        assertThat(depths()).containsEntry("root-a", 0).containsEntry("a1", 1).containsEntry("a11", 2)
+                .containsEntry("a12", 2).containsEntry("a2", 1).containsEntry("root-b", 0)
+                .containsEntry("root-c", 0).containsEntry("c1", 1);
+
+        // Not reachable from a root: left without a path for manual repair
+        assertThat(path("cycle-1")).isNull();
+        assertThat(path("cycle-2")).isNull();
+        assertThat(path("cycle-3")).isNull();
+    }
+
+    @Test
+    void statusCountersSumTheSubtrees() throws Exception {
+        liquibase.update(CONTEXTS, new LabelExpression());
+
+        // child pending/tested/cancelled, then descendant pending/tested/cancelled
+        assertThat(counters("root-a")).containsExactly(1, 1, 0, 1, 2, 1);
+        assertThat(counters("a1")).containsExactly(0, 1, 1, 0, 1, 1);
+        assertThat(counters("root-c")).containsExactly(0, 1, 0, 0, 1, 0);
+        for (String leaf : new String[]{"a11", "a12", "a2", "root-b", "c1"}) {
+            assertThat(counters(leaf)).as(leaf).containsOnly(0);
+        }
+
+        // Skipped like the paths: counting around a cycle never ends in a correct total
+        for (String cycle : new String[]{"cycle-1", "cycle-2", "cycle-3"}) {
+            assertThat(counters(cycle)).as(cycle).containsOnly(0);
+        }
+    }
+
+    private void insert(String name, String parent, String status) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO mind_map_node (parent_id, description, requirement_id, status) VALUES (?, ?, 'REQ-BACKFILL', ?)",
+                Statement.RETURN_GENERATED_KEYS)) {
+            if (parent != null) {
+                insert.setLong(1, ids.get(parent));
+            } else {
+                insert.setNull(1, java.sql.Types.BIGINT);
+            }
+            insert.setString(2, name);
+            insert.setString(3, status);
+            insert.executeUpdate();
+            try (ResultSet keys = insert.getGeneratedKeys()) {
+                keys.next();
+                ids.put(name, keys.getLong(1));
+            }
+        }
+    }
+
+    // The path a node should have below the given parent, built from the seeded ids
+    private String path(String parent, String name) throws SQLException {
+        return (parent != null ? path(parent) : "/") + ids.get(name) + "/";
+    }
+
+    private String path(String name) throws SQLException {
+        return column(name, "path");
+    }
+
+    private Map<String, Integer> depths() throws SQLException {
+        Map<String, Integer> depths = new HashMap<>();
+        for (String name : ids.keySet()) {
+            depths.put(name, Integer.valueOf(column(name, "depth")));
+        }
+        return depths;
+    }
+
+    private int[] counters(String name) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT child_pending_count, child_tested_count, child_cancelled_count,"
+                        + " desc_pending_count, desc_tested_count, desc_cancelled_count FROM mind_map_node WHERE id = ?")) {
+            select.setLong(1, ids.get(name));
+            try (ResultSet rows = select.executeQuery()) {
+                rows.next();
+                int[] counters = new int[6];
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] = rows.getInt(i + 1);
+                }
+                return counters;
+            }
+        }
+    }
+
+    private String column(String name, String column) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("SELECT " + column + " FROM mind_map_node WHERE id = ?")) {
+            select.setLong(1, ids.get(name));
+            try (ResultSet rows = select.executeQuery()) {
+                rows.next();
+                return rows.getString(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.mindmap.service;
+
+import com.example.mindmap.MindmapApplication;
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.PessimisticLockingFailureException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The application without its web layer on a fresh embedded H2 database in MySQL mode, schema and
+ * sample data applied by the normal Liquibase changelog, like the benchmarks run it.
+ */
+final class MindMapTestContext implements AutoCloseable {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    final String database;
+    final ConfigurableApplicationContext context;
+    final MindMapService service;
+
+    private MindMapTestContext(String database, ConfigurableApplicationContext context) {
+        this.database = database;
+        this.context = context;
+        this.service = context.getBean(MindMapService.class);
+    }
+
+    // Extra settings as name=value, e.g. "mindmap.propagation.async=true"
+    static MindMapTestContext start(String... properties) {
+        return startOn(newDatabase(), properties);
+    }
+
+    static String newDatabase() {
+        return "mindmap-test-" + DATABASES.incrementAndGet();
+    }
+
+    // The database outlives the context, so a later context on the same name sees what this one left
+    static MindMapTestContext startOn(String database, String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + url(database),
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new MindMapTestContext(database, new SpringApplicationBuilder(MindmapApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new)));
+    }
+
+    // Without H2's per-session query result cache: a poll like awaitPropagation's can cache a result
+    // read between another session's write and its commit, and then keep returning it.
+    private static String url(String database) {
+        return "jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;QUERY_CACHE_SIZE=0";
+    }
+
+    // A connection of its own, outside the application's pool, e.g. to hold row locks against it
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(url(database), "sa", "");
+    }
+
+    // Runs a change the way a client would: H2 picks deadlock victims among concurrent writers
+    // (e.g. a request and a propagation worker), and the victim is sent again.
+    <T> T retrying(Supplier<T> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return change.get();
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == 5) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // Waits until no propagation of the requirement is queued or running; returns at once in synchronous mode
+    void awaitPropagation(String requirementId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            PropagationStateDto state = service.getPropagationState(requirementId);
+            if (state.getPendingNodeIds().isEmpty() && !state.isRunning()) {
+                return;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Propagation of " + requirementId + " still busy: " + state);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    // Ids of the requirement's tree in pre-order
+    List<Long> nodeIds(String requirementId) {
+        List<Long> ids = new ArrayList<>();
+        collectIds(service.getMindMapByRequirementId(requirementId), ids);
+        return ids;
+    }
+
+    private static void collectIds(List<MindMapNodeDto> nodes, List<Long> ids) {
+        for (MindMapNodeDto node : nodes) {
+            ids.add(node.getId());
+            collectIds(node.getChildren(), ids);
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
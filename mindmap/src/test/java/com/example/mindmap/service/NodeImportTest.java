@@ -0,0 +1,178 @@
+package com.example.mindmap.service;
+
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.dto.NodeImportReportDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Bulk import computes ids, paths, depths and counters in memory and writes them level by level.
+ * The stored rows must look like rows added one at a time, and rejected input must leave nothing
+ * behind.
+ */
+class NodeImportTest {
+
+    private static final int MAX_NODES = 6;
+
+    private static MindMapTestContext context;
+
+    @BeforeAll
+    static void start() {
+        context = MindMapTestContext.start("mindmap.bulk-import.max-nodes=" + MAX_NODES);
+    }
+
+    @AfterAll
+    static void stop() {
+        context.close();
+    }
+
+    @Test
+    void nestedTreeBelowAnExistingNode() {
+        MindMapNode parent = addRoot("REQ-IMPORT-NESTED");
+        // a
+        //   b (tested)
+        //   c (cancelled)
+        //     d (tested)
+        MindMapNodeDto a = dto(null, "a", NodeStatus.PENDING_TEST,
+                dto(null, "b", NodeStatus.TESTED),
+                dto(null, "c", NodeStatus.CANCELLED, dto(null, "d", NodeStatus.TESTED)));
+
+        NodeImportReportDto report = context.service.importNodes(parent.getId(), List.of(a));
+
+        assertThat(report.getImportedCount()).isEqualTo(4);
+        List<Long> ids = ids(report);
+        assertThat(report.getRootIds()).containsExactly(ids.get(0));
+        // Pre-order: a, b, c, d
+        assertThat(report.getIdMapping()).extracting(NodeImportReportDto.IdMapping::getIndex).containsExactly(0, 1, 2, 3);
+        assertThat(report.getIdMapping()).extracting(NodeImportReportDto.IdMapping::getParentId)
+                .containsExactly(parent.getId(), ids.get(0), ids.get(0), ids.get(2));
+
+        MindMapNode storedA = node(ids.get(0));
+        MindMapNode storedC = node(ids.get(2));
+        MindMapNode storedD = node(ids.get(3));
+        assertThat(storedA.getRequirementId()).isEqualTo("REQ-IMPORT-NESTED");
+        assertThat(storedA.getPath()).isEqualTo(parent.getPath() + ids.get(0) + "/");
+        assertThat(storedD.getPath()).isEqualTo(storedC.getPath() + ids.get(3) + "/");
+        assertThat(storedA.getDepth()).isEqualTo(1);
+        assertThat(storedD.getDepth()).isEqualTo(3);
+
+        assertThat(counters(storedA)).containsExactly(0, 1, 1, 0, 2, 1);
+        assertThat(counters(storedC)).containsExactly(0, 1, 0, 0, 1, 0);
+        assertThat(counters(storedD)).containsOnly(0);
+        // The existing parent counts the imported subtree as well
+        assertThat(counters(node(parent.getId()))).containsExactly(1, 0, 0, 1, 2, 1);
+    }
+
+    @Test
+    void ndjsonRecordsAreLinkedByTheirIds() throws Exception {
+        String ndjson = String.join("\n",
+                "{\"id\": 10, \"description\": \"first root\", \"requirementId\": \"REQ-IMPORT-NDJSON\"}",
+                "{\"id\": 20, \"parentId\": 10, \"description\": \"child\", \"requirementId\": \"REQ-IMPORT-NDJSON\", \"status\": \"TESTED\"}",
+                "{\"id\": 30, \"parentId\": 20, \"description\": \"grandchild\", \"requirementId\": \"REQ-IMPORT-NDJSON\"}",
+                "{\"id\": 40, \"description\": \"second root\", \"requirementId\": \"REQ-IMPORT-NDJSON\"}");
+
+        NodeImportReportDto report = context.service.importNodesNdjson(null, stream(ndjson));
+
+        assertThat(report.getImportedCount()).isEqualTo(4);
+        List<Long> ids = ids(report);
+        assertThat(report.getIdMapping()).extracting(NodeImportReportDto.IdMapping::getSourceId).containsExactly(10L, 20L, 30L, 40L);
+        assertThat(report.getIdMapping()).extracting(NodeImportReportDto.IdMapping::getParentId)
+                .containsExactly(null, ids.get(0), ids.get(1), null);
+        assertThat(report.getRootIds()).containsExactly(ids.get(0), ids.get(3));
+
+        MindMapNode root = node(ids.get(0));
+        MindMapNode grandchild = node(ids.get(2));
+        assertThat(root.getPath()).isEqualTo("/" + ids.get(0) + "/");
+        assertThat(grandchild.getPath()).isEqualTo("/" + ids.get(0) + "/" + ids.get(1) + "/" + ids.get(2) + "/");
+        assertThat(root.getDepth()).isZero();
+        assertThat(grandchild.getDepth()).isEqualTo(2);
+        assertThat(counters(root)).containsExactly(0, 1, 0, 1, 1, 0);
+        assertThat(context.nodeIds("REQ-IMPORT-NDJSON")).containsExactlyInAnyOrderElementsOf(ids);
+    }
+
+    @Test
+    void ndjsonParentMustComeFirst() {
+        String ndjson = String.join("\n",
+                "{\"id\": 20, \"parentId\": 10, \"description\": \"child\", \"requirementId\": \"REQ-IMPORT-ORDER\"}",
+                "{\"id\": 10, \"description\": \"root\", \"requirementId\": \"REQ-IMPORT-ORDER\"}");
+
+        assertThatThrownBy(() -> context.service.importNodesNdjson(null, stream(ndjson)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must appear earlier");
+        assertThat(context.nodeIds("REQ-IMPORT-ORDER")).isEmpty();
+    }
+
+    @Test
+    void blankDescriptionRejectsTheWholeImport() {
+        MindMapNodeDto root = dto("REQ-IMPORT-BLANK", "root", NodeStatus.PENDING_TEST, dto(null, " ", NodeStatus.PENDING_TEST));
+
+        assertThatThrownBy(() -> context.service.importNodes(null, List.of(root)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Node 1: description cannot be empty");
+        assertThat(context.nodeIds("REQ-IMPORT-BLANK")).isEmpty();
+    }
+
+    @Test
+    void importsAboveTheLimitAreRejected() {
+        List<MindMapNodeDto> roots = new ArrayList<>();
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i <= MAX_NODES; i++) {
+            roots.add(dto("REQ-IMPORT-LIMIT", "node " + i, NodeStatus.PENDING_TEST));
+            ndjson.append("{\"description\": \"node ").append(i).append("\", \"requirementId\": \"REQ-IMPORT-LIMIT\"}\n");
+        }
+
+        assertThatThrownBy(() -> context.service.importNodes(null, roots))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Import exceeds " + MAX_NODES + " nodes");
+        assertThatThrownBy(() -> context.service.importNodesNdjson(null, stream(ndjson.toString())))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Import exceeds " + MAX_NODES + " nodes");
+        assertThat(context.nodeIds("REQ-IMPORT-LIMIT")).isEmpty();
+    }
+
+    private static MindMapNode addRoot(String requirementId) {
+        MindMapNode node = new MindMapNode();
+        node.setRequirementId(requirementId);
+        node.setDescription("existing root");
+        return context.service.addNode(node);
+    }
+
+    private static MindMapNodeDto dto(String requirementId, String description, NodeStatus status, MindMapNodeDto... children) {
+        MindMapNodeDto dto = new MindMapNodeDto();
+        dto.setRequirementId(requirementId);
+        dto.setDescription(description);
+        dto.setStatus(status);
+        dto.setChildren(List.of(children));
+        return dto;
+    }
+
+    private static List<Long> ids(NodeImportReportDto report) {
+        return report.getIdMapping().stream().map(NodeImportReportDto.IdMapping::getId).toList();
+    }
+
+    private static MindMapNode node(Long id) {
+        return context.service.getNodeById(id);
+    }
+
+    // child pending/tested/cancelled, then descendant pending/tested/cancelled
+    private static int[] counters(MindMapNode node) {
+        return new int[]{node.getChildPendingCount(), node.getChildTestedCount(), node.getChildCancelledCount(),
+                node.getDescPendingCount(), node.getDescTestedCount(), node.getDescCancelledCount()};
+    }
+
+    private static InputStream stream(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.mindmap.service;
+
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.dto.PropagationStateDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Asynchronous propagation (mindmap.propagation.async) only defers the work: once the queue is
+ * drained, statuses and counters must be what synchronous propagation leaves behind. Both modes
+ * get the same operations on identical databases and are compared node by node. Runs that fail, or
+ * that are cut off by a shutdown, must still end there once they are picked up again.
+ */
+class PropagationModesTest {
+
+    private static final NodeStatus[] STATUSES = NodeStatus.values();
+    // Workers give up on a locked row quickly instead of after H2's default second
+    private static final String LOCK_TIMEOUT = "spring.datasource.hikari.connection-init-sql=SET LOCK_TIMEOUT 200";
+
+    private static MindMapTestContext sync;
+    private static MindMapTestContext async;
+
+    @BeforeAll
+    static void start() {
+        sync = MindMapTestContext.start("mindmap.propagation.async=false");
+        async = MindMapTestContext.start("mindmap.propagation.async=true");
+    }
+
+    @AfterAll
+    static void stop() {
+        sync.close();
+        async.close();
+    }
+
+    @Test
+    void randomClicksEndInTheSameState() throws InterruptedException {
+        String requirementId = "REQ-MODES-RANDOM";
+        for (MindMapTestContext mode : List.of(sync, async)) {
+            mode.service.importNodes(null, List.of(tree(requirementId, new Random(7), 4)));
+        }
+
+        Random random = new Random(13);
+        for (int step = 0; step < 200; step++) {
+            List<Long> ids = sync.nodeIds(requirementId);
+            assertThat(async.nodeIds(requirementId)).isEqualTo(ids);
+            int dice = random.nextInt(10);
+            NodeStatus status = STATUSES[random.nextInt(STATUSES.length)];
+            if (dice < 6) {
+                Long nodeId = ids.get(random.nextInt(ids.size()));
+                for (MindMapTestContext mode : List.of(sync, async)) {
+                    mode.retrying(() -> mode.service.setNodeStatus(nodeId, status, null));
+                }
+            } else if (dice < 9) {
+                List<Long> shuffled = new ArrayList<>(ids);
+                Collections.shuffle(shuffled, random);
+                List<Long> nodeIds = shuffled.subList(0, Math.min(4, shuffled.size()));
+                for (MindMapTestContext mode : List.of(sync, async)) {
+                    mode.retrying(() -> mode.service.batchSetNodeStatus(nodeIds, status, null));
+                }
+            } else {
+                // A move changes what a still queued click covers, so clicks before it are propagated first
+                async.awaitPropagation(requirementId);
+                Long nodeId = ids.get(random.nextInt(ids.size()));
+                Long newParentId = ids.get(random.nextInt(ids.size()));
+                for (MindMapTestContext mode : List.of(sync, async)) {
+                    move(mode, nodeId, newParentId);
+                }
+            }
+        }
+        async.awaitPropagation(requirementId);
+
+        assertConsistent(sync, requirementId);
+        assertThat(snapshot(async, requirementId)).isEqualTo(snapshot(sync, requirementId));
+    }
+
+    @Test
+    void statusChangeAndMoveInOneTransaction() throws InterruptedException {
+        // The click is queued when the transaction commits, after the node has left its old
+        // ancestors; those must be recounted all the same. One child stays behind, so the old
+        // parent keeps deriving its status from children.
+        String requirementId = "REQ-MODES-MOVE";
+        Map<MindMapTestContext, List<Long>> rootIds = new LinkedHashMap<>();
+        for (MindMapTestContext mode : List.of(sync, async)) {
+            MindMapNodeDto root = node(requirementId, NodeStatus.PENDING_TEST);
+            for (int i = 0; i < 2; i++) {
+                MindMapNodeDto branch = node(requirementId, NodeStatus.PENDING_TEST);
+                for (int j = 0; j < 3; j++) {
+                    MindMapNodeDto middle = node(requirementId, NodeStatus.PENDING_TEST);
+                    for (int k = 0; k < 4; k++) {
+                        middle.getChildren().add(node(requirementId, NodeStatus.PENDING_TEST));
+                    }
+                    branch.getChildren().add(middle);
+                }
+                root.getChildren().add(branch);
+            }
+            rootIds.put(mode, mode.service.importNodes(null, List.of(root)).getRootIds());
+        }
+        assertThat(rootIds.get(async)).isEqualTo(rootIds.get(sync));
+
+        List<MindMapNodeDto> roots = sync.service.getMindMapByRequirementId(requirementId);
+        MindMapNodeDto from = roots.get(0).getChildren().get(0);
+        MindMapNodeDto to = roots.get(0).getChildren().get(1);
+        for (MindMapTestContext mode : List.of(sync, async)) {
+            TransactionTemplate transaction = new TransactionTemplate(mode.context.getBean(PlatformTransactionManager.class));
+            for (MindMapNodeDto moved : from.getChildren().subList(0, 2)) {
+                transaction.executeWithoutResult(tx -> {
+                    mode.service.setNodeStatus(moved.getId(), NodeStatus.TESTED, null);
+                    mode.service.moveNode(moved.getId(), to.getId(), null);
+                });
+            }
+        }
+        async.awaitPropagation(requirementId);
+
+        assertConsistent(sync, requirementId);
+        assertThat(snapshot(async, requirementId)).isEqualTo(snapshot(sync, requirementId));
+        MindMapNode left = async.service.getNodeById(from.getId());
+        assertThat(left.getDescTestedCount()).isZero();
+        assertThat(left.getDescPendingCount()).isEqualTo(5);
+    }
+
+    @Test
+    void failedRunIsRetriedThenLeftToTheSweep() throws Exception {
+        String requirementId = "REQ-MODES-RETRY";
+        try (MindMapTestContext mode = MindMapTestContext.start("mindmap.propagation.async=true",
+                "mindmap.propagation.max-attempts=2", "mindmap.propagation.recovery-interval=3s", LOCK_TIMEOUT);
+             Connection blocker = mode.connect()) {
+            MindMapNodeDto middle = chain(mode, requirementId);
+            Long leafId = middle.getChildren().get(0).getId();
+
+            // The cascade cannot update a row locked by another transaction, so every run fails
+            lock(blocker, leafId);
+            mode.service.setNodeStatus(middle.getId(), NodeStatus.TESTED, null);
+            long deadline = System.currentTimeMillis() + 10_000;
+            PropagationStateDto state = mode.service.getPropagationState(requirementId);
+            while (attempts(blocker) < 2 || state.isRunning()) {
+                assertThat(System.currentTimeMillis()).as("retries of the failed run").isLessThan(deadline);
+                Thread.sleep(10);
+                state = mode.service.getPropagationState(requirementId);
+            }
+            assertThat(state.getPendingNodeIds()).containsExactly(middle.getId());
+            assertThat(state.getCompletedRuns()).isEqualTo(2);
+            assertThat(status(blocker, leafId)).isEqualTo(NodeStatus.PENDING_TEST.name());
+
+            // Given up after max-attempts; the recovery sweep finishes it once the lock is gone
+            blocker.rollback();
+            mode.awaitPropagation(requirementId);
+            assertConsistent(mode, requirementId);
+            assertThat(mode.service.getNodeById(leafId).getStatus()).isEqualTo(NodeStatus.TESTED);
+        }
+    }
+
+    @Test
+    void workPendingAtShutdownIsDoneByTheNextStart() throws Exception {
+        String requirementId = "REQ-MODES-SHUTDOWN";
+        String database = MindMapTestContext.newDatabase();
+        Long leafId;
+        try (MindMapTestContext first = MindMapTestContext.startOn(database, "mindmap.propagation.async=true", LOCK_TIMEOUT);
+             Connection blocker = first.connect()) {
+            MindMapNodeDto middle = chain(first, requirementId);
+            leafId = middle.getChildren().get(0).getId();
+            lock(blocker, leafId);
+            first.service.setNodeStatus(middle.getId(), NodeStatus.TESTED, null);
+            first.close();
+
+            // The worker could not finish before shutdown, and the click is still queued
+            try (Statement statement = blocker.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM propagation_queue")) {
+                rows.next();
+                assertThat(rows.getLong(1)).isEqualTo(1);
+            }
+            assertThat(status(blocker, leafId)).isEqualTo(NodeStatus.PENDING_TEST.name());
+            blocker.rollback();
+        }
+
+        // Started like a scaled-out instance, on the schema the first one created
+        try (MindMapTestContext second = MindMapTestContext.startOn(database, "mindmap.propagation.async=true",
+                "mindmap.migrations.mode=SKIP")) {
+            second.awaitPropagation(requirementId);
+            assertConsistent(second, requirementId);
+            assertThat(second.service.getNodeById(leafId).getStatus()).isEqualTo(NodeStatus.TESTED);
+        }
+    }
+
+    // A root with one middle node and three leaves, all pending; returns the middle node
+    private static MindMapNodeDto chain(MindMapTestContext mode, String requirementId) {
+        MindMapNodeDto root = node(requirementId, NodeStatus.PENDING_TEST);
+        MindMapNodeDto middle = node(requirementId, NodeStatus.PENDING_TEST);
+        for (int i = 0; i < 3; i++) {
+            middle.getChildren().add(node(requirementId, NodeStatus.PENDING_TEST));
+        }
+        root.getChildren().add(middle);
+        mode.service.importNodes(null, List.of(root));
+        return mode.service.getMindMapByRequirementId(requirementId).get(0).getChildren().get(0);
+    }
+
+    private static void lock(Connection connection, Long nodeId) throws SQLException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM mind_map_node WHERE id = ? FOR UPDATE")) {
+            statement.setLong(1, nodeId);
+            statement.executeQuery().close();
+        }
+    }
+
+    private static int attempts(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT COALESCE(MAX(attempts), 0) FROM propagation_queue")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private static String status(Connection connection, Long nodeId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT status FROM mind_map_node WHERE id = ?")) {
+            statement.setLong(1, nodeId);
+            try (ResultSet rows = statement.executeQuery()) {
+                rows.next();
+                return rows.getString(1);
+            }
+        }
+    }
+
+    private static void move(MindMapTestContext mode, Long nodeId, Long newParentId) {
+        try {
+            mode.retrying(() -> mode.service.moveNode(nodeId, newParentId, null));
+        } catch (IllegalArgumentException e) {
+            // Below itself or one of its descendants; rejected in both modes
+        }
+    }
+
+    // Per node: parent, status and the stored child and descendant counters
+    private static Map<Long, String> snapshot(MindMapTestContext mode, String requirementId) {
+        Map<Long, String> nodes = new LinkedHashMap<>();
+        for (Long id : mode.nodeIds(requirementId)) {
+            MindMapNode node = mode.service.getNodeById(id);
+            nodes.put(id, node.getParentId() + " " + node.getStatus()
+                    + " children " + node.getChildPendingCount() + "/" + node.getChildTestedCount() + "/" + node.getChildCancelledCount()
+                    + " descendants " + node.getDescPendingCount() + "/" + node.getDescTestedCount() + "/" + node.getDescCancelledCount());
+        }
+        return nodes;
+    }
+
+    // Both modes agreeing is only worth something if one of them is right: every parent carries the
+    // status its children derive and counters matching its subtree.
+    private static void assertConsistent(MindMapTestContext mode, String requirementId) {
+        for (MindMapNodeDto root : mode.service.getMindMapByRequirementId(requirementId)) {
+            assertConsistent(mode, root);
+        }
+    }
+
+    private static int[] assertConsistent(MindMapTestContext mode, MindMapNodeDto node) {
+        int[] children = new int[STATUSES.length];
+        int[] descendants = new int[STATUSES.length];
+        for (MindMapNodeDto child : node.getChildren()) {
+            children[child.getStatus().ordinal()]++;
+            int[] below = assertConsistent(mode, child);
+            for (int i = 0; i < below.length; i++) {
+                descendants[i] += below[i];
+            }
+        }
+        MindMapNode stored = mode.service.getNodeById(node.getId());
+        assertThat(new int[] {stored.getChildPendingCount(), stored.getChildTestedCount(), stored.getChildCancelledCount()})
+                .as("child counters of node %d", node.getId())
+                .containsExactly(children[NodeStatus.PENDING_TEST.ordinal()], children[NodeStatus.TESTED.ordinal()],
+                        children[NodeStatus.CANCELLED.ordinal()]);
+        assertThat(new int[] {stored.getDescPendingCount(), stored.getDescTestedCount(), stored.getDescCancelledCount()})
+                .as("descendant counters of node %d", node.getId())
+                .containsExactly(descendants[NodeStatus.PENDING_TEST.ordinal()], descendants[NodeStatus.TESTED.ordinal()],
+                        descendants[NodeStatus.CANCELLED.ordinal()]);
+        if (!node.getChildren().isEmpty()) {
+            long distinct = node.getChildren().stream().map(MindMapNodeDto::getStatus).distinct().count();
+            NodeStatus derived = distinct == 1 ? node.getChildren().get(0).getStatus() : NodeStatus.PENDING_TEST;
+            assertThat(node.getStatus()).as("status of node %d", node.getId()).isEqualTo(derived);
+        }
+        descendants[node.getStatus().ordinal()]++;
+        return descendants;
+    }
+
+    private static MindMapNodeDto tree(String requirementId, Random random, int depth) {
+        MindMapNodeDto node = node(requirementId, STATUSES[random.nextInt(STATUSES.length)]);
+        if (depth > 0) {
+            int children = 1 + random.nextInt(3);
+            for (int i = 0; i < children; i++) {
+                node.getChildren().add(tree(requirementId, random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static MindMapNodeDto node(String requirementId, NodeStatus status) {
+        MindMapNodeDto node = new MindMapNodeDto();
+        node.setDescription("node");
+        node.setRequirementId(requirementId);
+        node.setStatus(status);
+        return node;
+    }
+}
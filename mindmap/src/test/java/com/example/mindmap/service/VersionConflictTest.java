@@ -0,0 +1,60 @@
+package com.example.mindmap.service;
+
+import com.example.mindmap.dto.BatchStatusUpdateResultDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * A write carrying a version the node has moved past is rejected (409 at the controller) and must
+ * leave the node, and the requirement's revision, as they were. With write-behind the version
+ * includes the buffered edits.
+ */
+class VersionConflictTest {
+
+    private static final String REQUIREMENT = "REQ-VERSIONS";
+
+    @ParameterizedTest(name = "writeBehind={0}")
+    @ValueSource(booleans = {false, true})
+    void staleVersionChangesNothing(boolean writeBehind) {
+        try (MindMapTestContext mode = MindMapTestContext.start("mindmap.write-behind.enabled=" + writeBehind)) {
+            MindMapService service = mode.service;
+            MindMapNode node = new MindMapNode();
+            node.setRequirementId(REQUIREMENT);
+            node.setDescription("first");
+            node.setRemarks("remarks");
+            Long nodeId = service.addNode(node).getId();
+            int stale = service.getNodeById(nodeId).getVersion();
+            MindMapNode current = service.updateNodeDescription(nodeId, "second", stale);
+            assertThat(current.getVersion()).isEqualTo(stale + 1);
+            String revision = service.getRequirementRevision(REQUIREMENT);
+
+            assertThatThrownBy(() -> service.updateNodeDescription(nodeId, "lost", stale))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+            assertThatThrownBy(() -> service.updateNodeRemarks(nodeId, "lost", stale))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+            assertThatThrownBy(() -> service.setNodeStatus(nodeId, NodeStatus.TESTED, stale))
+                    .isInstanceOf(OptimisticLockingFailureException.class);
+            BatchStatusUpdateResultDto batch = service.batchSetNodeStatus(List.of(nodeId), NodeStatus.TESTED, Map.of(nodeId, stale));
+            assertThat(batch.getConflicts()).singleElement().satisfies(conflict -> {
+                assertThat(conflict.getExpectedVersion()).isEqualTo(stale);
+                assertThat(conflict.getCurrentVersion()).isEqualTo(stale + 1);
+            });
+
+            MindMapNode unchanged = service.getNodeById(nodeId);
+            assertThat(unchanged.getDescription()).isEqualTo("second");
+            assertThat(unchanged.getRemarks()).isEqualTo("remarks");
+            assertThat(unchanged.getStatus()).isEqualTo(NodeStatus.PENDING_TEST);
+            assertThat(unchanged.getVersion()).isEqualTo(stale + 1);
+            assertThat(service.getRequirementRevision(REQUIREMENT)).isEqualTo(revision);
+        }
+    }
+}
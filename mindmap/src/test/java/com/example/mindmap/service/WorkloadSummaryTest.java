@@ -0,0 +1,148 @@
+package com.example.mindmap.service;
+
+import com.example.mindmap.dto.MindMapNodeDto;
+import com.example.mindmap.entity.MindMapNode;
+import com.example.mindmap.entity.NodeStatus;
+import com.example.mindmap.entity.PersonWorkload;
+import com.example.mindmap.entity.WorkloadRole;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The workload summary is maintained from deltas of every change; after each of a seeded series of
+ * random changes it must equal the counts recomputed from the requirement trees.
+ */
+class WorkloadSummaryTest {
+
+    private static final List<String> REQUIREMENTS = List.of("REQ-WL-1", "REQ-WL-2", "REQ-WL-3");
+    private static final String[] PEOPLE = {"ann", "bob", "cy", "dee", null};
+    private static final NodeStatus[] STATUSES = NodeStatus.values();
+
+    @ParameterizedTest(name = "async={0}")
+    @ValueSource(booleans = {false, true})
+    void summaryFollowsRandomChanges(boolean async) throws InterruptedException {
+        try (MindMapTestContext mode = MindMapTestContext.start("mindmap.propagation.async=" + async)) {
+            Random random = new Random(25);
+            for (String requirementId : REQUIREMENTS) {
+                mode.service.importNodes(null, List.of(tree(requirementId, random, 3), tree(requirementId, random, 2)));
+            }
+            assertSummary(mode, "import");
+
+            for (int step = 0; step < 150; step++) {
+                List<Long> ids = new ArrayList<>();
+                REQUIREMENTS.forEach(requirementId -> ids.addAll(mode.nodeIds(requirementId)));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                Long nodeId = ids.get(random.nextInt(ids.size()));
+                NodeStatus status = STATUSES[random.nextInt(STATUSES.length)];
+                String requirementId = REQUIREMENTS.get(random.nextInt(REQUIREMENTS.size()));
+                int operation = random.nextInt(9);
+                String description = step + ": operation " + operation + " on node " + nodeId;
+                try {
+                    mode.retrying(() -> change(mode, operation, nodeId, status, requirementId, ids, random));
+                } catch (IllegalArgumentException e) {
+                    // A move below the node's own subtree; nothing changed
+                }
+                assertSummary(mode, description);
+            }
+        }
+    }
+
+    private static Object change(MindMapTestContext mode, int operation, Long nodeId, NodeStatus status,
+                                 String requirementId, List<Long> ids, Random random) {
+        MindMapService service = mode.service;
+        switch (operation) {
+            case 0, 1 -> service.setNodeStatus(nodeId, status, null);
+            case 2 -> {
+                List<Long> shuffled = new ArrayList<>(ids);
+                Collections.shuffle(shuffled, random);
+                service.batchSetNodeStatus(shuffled.subList(0, Math.min(4, shuffled.size())), status, null);
+            }
+            case 3 -> service.moveNode(nodeId, ids.get(random.nextInt(ids.size())), null);
+            // To a root of a random requirement, which re-homes the subtree
+            case 4 -> service.moveNode(nodeId, null, requirementId);
+            case 5 -> service.deleteNodeAndChildren(nodeId);
+            case 6 -> service.deleteNodeKeepChildren(nodeId);
+            case 7 -> {
+                MindMapNode node = new MindMapNode();
+                node.setParentId(nodeId);
+                node.setRequirementId(service.getNodeById(nodeId).getRequirementId());
+                node.setDescription("added");
+                node.setStatus(status);
+                node.setTester(person(random));
+                node.setBackendDeveloper(person(random));
+                node.setFrontendDeveloper(person(random));
+                service.addNode(node);
+            }
+            default -> service.importNodes(nodeId, List.of(tree(null, random, 2)));
+        }
+        return null;
+    }
+
+    private static void assertSummary(MindMapTestContext mode, String after) throws InterruptedException {
+        for (String requirementId : REQUIREMENTS) {
+            mode.awaitPropagation(requirementId);
+        }
+        for (String requirementId : REQUIREMENTS) {
+            Map<String, int[]> counts = new TreeMap<>();
+            count(mode.service.getMindMapByRequirementId(requirementId), counts);
+            Map<String, String> expected = new TreeMap<>();
+            counts.forEach((key, perStatus) -> expected.put(key, perStatus[0] + "/" + perStatus[1] + "/" + perStatus[2]));
+            Map<String, String> actual = new TreeMap<>();
+            for (PersonWorkload row : mode.service.getRequirementWorkload(requirementId, null)) {
+                if (row.getTotal() > 0) {
+                    actual.put(row.getRole() + " " + row.getPerson(), row.getPending() + "/" + row.getTested() + "/" + row.getCancelled());
+                }
+            }
+            assertThat(actual).as("workload of %s after %s", requirementId, after).isEqualTo(expected);
+        }
+    }
+
+    // Pending, tested and cancelled nodes per role and person
+    private static void count(List<MindMapNodeDto> nodes, Map<String, int[]> counts) {
+        for (MindMapNodeDto node : nodes) {
+            count(counts, WorkloadRole.TESTER, node.getTester(), node.getStatus());
+            count(counts, WorkloadRole.BACKEND_DEVELOPER, node.getBackendDeveloper(), node.getStatus());
+            count(counts, WorkloadRole.FRONTEND_DEVELOPER, node.getFrontendDeveloper(), node.getStatus());
+            count(node.getChildren(), counts);
+        }
+    }
+
+    private static void count(Map<String, int[]> counts, WorkloadRole role, String person, NodeStatus status) {
+        if (person != null) {
+            int[] perStatus = counts.computeIfAbsent(role + " " + person, key -> new int[3]);
+            perStatus[status == NodeStatus.PENDING_TEST ? 0 : status == NodeStatus.TESTED ? 1 : 2]++;
+        }
+    }
+
+    private static MindMapNodeDto tree(String requirementId, Random random, int depth) {
+        MindMapNodeDto node = new MindMapNodeDto();
+        node.setDescription("node");
+        node.setRequirementId(requirementId);
+        node.setStatus(STATUSES[random.nextInt(STATUSES.length)]);
+        node.setTester(person(random));
+        node.setBackendDeveloper(person(random));
+        node.setFrontendDeveloper(person(random));
+        if (depth > 0) {
+            int children = random.nextInt(4);
+            for (int i = 0; i < children; i++) {
+                node.getChildren().add(tree(requirementId, random, depth - 1));
+            }
+        }
+        return node;
+    }
+
+    private static String person(Random random) {
+        return PEOPLE[random.nextInt(PEOPLE.length)];
+    }
+}